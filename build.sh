@@ -0,0 +1,7 @@
+#!/bin/sh
+# Compiles the sources into out/.
+# NeuralEvaluator uses the Vector API, so the incubator module is needed at compile time.
+set -e
+cd "$(dirname "$0")"
+rm -rf out
+javac --add-modules jdk.incubator.vector -d out $(find src -name '*.java')
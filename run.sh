@@ -0,0 +1,7 @@
+#!/bin/sh
+# Runs a main class of out/, e.g. ./run.sh game.bench.SearchBenchmark 50 4
+# The Vector API is enabled by --add-modules, without it (or with -Dgame.vector=false) the neural evaluation uses its scalar loops.
+cd "$(dirname "$0")"
+main=${1:-Main}
+[ $# -gt 0 ] && shift
+exec java --add-modules jdk.incubator.vector $JAVA_OPTS -cp out "$main" "$@"
@@ -1,15 +1,28 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Scanner;
 import game.*;
 import game.players.*;
 import game.board.*;
+import game.record.*;
 
 class Main {
 	private static final Scanner input = new Scanner(System.in);
-	private static final int MAX_MOVES = 100;
 	private static Game game;
+	/**
+	 * Records the game in the binary record format if the program is started with --record file
+	 */
+	private static BinaryRecordWriter recorder;
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		if(args.length == 2 && args[0].equals("--record")) {
+			recorder = new BinaryRecordWriter(new FileOutputStream(args[1]));
+		}
 		startGame();
+		if(recorder != null) {
+			recorder.endGame();
+			recorder.close();
+		}
 	}
 	
 	
@@ -67,6 +80,12 @@ class Main {
 			game = new Game(depth, 'B', 'W');
 			currentPlayer = game.getAIPlayer();
 		}
+		game.getAIPlayer().enableTranspositionTable(20);
+		game.getAIPlayer().enableEvalCache(18);
+		//on the hard level the AI also tries to prove forced wins
+		if(depth >= 5) {
+			game.getAIPlayer().enableSolver(20, 200000, 1000);
+		}
 		return currentPlayer;
 	}
 	
@@ -75,14 +94,16 @@ class Main {
 	 */
 	private static void startGame()  {
 		Player currentPlayer; 
-		int numberOfMoves = 0;
 		
 		do { 
 			currentPlayer = setupGame();
 		} while(currentPlayer == null);
+		if(recorder != null) {
+			game.addMoveListener(recorder);
+		}
 	
 				
-		while(!game.hasLost(currentPlayer) && numberOfMoves < MAX_MOVES) {
+		while(!game.hasLost(currentPlayer) && !game.isDraw()) {
 					
 			if(currentPlayer.getGamePhase() == GamePhase.PLACING_PIECES) {
 				//call firstPhase until the users gives valid input 
@@ -93,7 +114,6 @@ class Main {
 				//call secondPhase until the users gives valid input 
 				while(!secondPhaseMove(game, currentPlayer));
 			}
-			numberOfMoves++;
 			currentPlayer = game.getOtherPlayer(currentPlayer);
 		}
 		
@@ -111,7 +131,7 @@ class Main {
 			System.out.println("Surprisingly, you won.");
 		}
 		
-		else if(numberOfMoves > MAX_MOVES) {
+		else if(game.isDraw()) {
 			System.out.println("No winner could be determined. It seems that you can play as good as the AI.");
 		}
 	}
@@ -151,14 +171,15 @@ class Main {
 			}
 		}
 		
-		if(game.applyMove(move, currentPlayer)) {
-			checkMill(game, currentPlayer, move);
-			System.out.println();
-			return true;
-		} else {
-			System.out.println("Invalid Move. Try again.");
-			return false;
+		if(currentPlayer != game.getAIPlayer()) {
+			move = completeHumanMove(game, currentPlayer, move);
+			if(move == null) {
+				return false;
+			}
 		}
+		game.applyMove(move, currentPlayer);
+		System.out.println();
+		return true;
 	}
 	
 	/**
@@ -194,52 +215,75 @@ class Main {
 				return false;
 			}
 		}
-		if(game.applyMove(move, currentPlayer)) {
-			checkMill(game, currentPlayer, move);
-			System.out.println();
-			return true;
-		} else {
-			System.out.println("Invalid Move. Try again.");
-			return false;
+		if(currentPlayer != game.getAIPlayer()) {
+			move = completeHumanMove(game, currentPlayer, move);
+			if(move == null) {
+				return false;
+			}
 		}
+		game.applyMove(move, currentPlayer);
+		System.out.println();
+		return true;
 	}
 	
 	/**
-	 * This method asks the user for the piece to remove if the player made a mill.
+	 * Validates the move of the user in one pass and asks for the piece to remove if the move makes a mill.
+	 * @param game The game where everything takes place
+	 * @param currentPlayer The user
+	 * @param move The move given by the user, without piece to remove
+	 * @return The complete move or null if the move is invalid
+	 */
+	private static Move completeHumanMove(Game game, Player currentPlayer, Move move) {
+		int moveCode = move.toCode();
+		MoveError error = game.validateMove(moveCode, currentPlayer);
+		if(error == MoveError.REMOVAL_MISSING) {
+			moveCode = askForRemoval(game, currentPlayer, moveCode);
+		}
+		else if(error != MoveError.NONE) {
+			System.out.println("Invalid Move: " + error + ". Try again.");
+			return null;
+		}
+		else if(game.closesMill(moveCode, currentPlayer)) {
+			System.out.println("You made a mill, but you can't remove a piece from your opponent (all his pieces belong to mills).");
+		}
+		return Move.fromCode(moveCode, game.getBoard());
+	}
+	
+	/**
+	 * This method asks the user for the piece to remove after the player made a mill.
 	 * It also validates the input.
 	 * @param game The game where everything takes place
-	 * @param currentPlayer  
-	 * @param move The move that might made a mill
+	 * @param currentPlayer The user
+	 * @param moveCode The code of the move making the mill
+	 * @return The code of the move together with the piece to remove
 	 */
-	private static void checkMill(Game game, Player currentPlayer, Move move) {
-		//You don't need to check if the AIPlayer made a mill,
-		//because it was already checked in the computation of the best move and applied in applyMove 
-		if(game.checkIfMill(currentPlayer, move,null) && currentPlayer != game.getAIPlayer()) {
-			
-			int removeIndex;
-			//endless loop for invalid user input
-			while(true) {
-				if(currentPlayer == game.getHumanPlayer()) {
-					if(!game.allPiecesBelongToMill(game.getAIPlayer())) {
-						//if the other player has only three pieces, the current player has now definitely won
-						if(game.getOtherPlayer(currentPlayer).getNumOfRemainingPieces() <= 3) {
-							game.getOtherPlayer(currentPlayer).decNumOfRemainingPieces();
-							return;
-						}
-						System.out.println("You made a mill. Give the index of the opponent's piece to remove:");
-						removeIndex = input.nextInt();
-						if(game.removePiece(removeIndex, currentPlayer)) {
-							break;
-						} else {
-							System.out.println("Invalid Removal. Try again.");
-						}
-					}
-					else {
-						System.out.println("You made a mill, but you can't remove a piece from your opponent (all his pieces belong to mills).");
-						break;
-					}
+	private static int askForRemoval(Game game, Player currentPlayer, int moveCode) {
+		int source = Move.sourceOf(moveCode), destination = Move.destinationOf(moveCode);
+		//if the other player has only three pieces, the current player has now definitely won, so any piece is taken
+		if(game.getOtherPlayer(currentPlayer).getNumOfRemainingPieces() <= 3) {
+			for(int index = 0; index < Board.BOARD_SIZE; index++) {
+				if(game.validateMove(Move.toCode(source, destination, index), currentPlayer) == MoveError.NONE) {
+					return Move.toCode(source, destination, index);
 				}
 			}
-		}	
+		}
+		//endless loop for invalid user input
+		while(true) {
+			System.out.println("You made a mill. Give the index of the opponent's piece to remove:");
+			int removeIndex;
+			try {
+				removeIndex = input.nextInt(); //might throw InputMismatchException
+			}
+			catch(Exception x) {
+				input.nextLine();
+				removeIndex = -1;
+			}
+			MoveError error = removeIndex < 0 || removeIndex >= Board.BOARD_SIZE ? MoveError.REMOVAL_NOT_OPPONENT 
+					: game.validateMove(Move.toCode(source, destination, removeIndex), currentPlayer);
+			if(error == MoveError.NONE) {
+				return Move.toCode(source, destination, removeIndex);
+			}
+			System.out.println("Invalid Removal: " + error + ". Try again.");
+		}
 	}
 }
@@ -0,0 +1,35 @@
+package game;
+
+/**
+ * The rules ending a game in a draw: the same position occurring repeatedly
+ * or too many moves without a mill
+ */
+public class DrawRules {
+	/**
+	 * Threefold repetition and 50 moves without a mill
+	 */
+	public static final DrawRules DEFAULT = new DrawRules(3, 50);
+	
+	private final int repetitions;
+	private final int movesWithoutMill;
+	
+	/**
+	 * @param repetitions Number of occurrences of the same position (with the same player in turn) making the game a draw
+	 * @param movesWithoutMill Number of moves (of both players together) without a mill making the game a draw,
+	 * counted from the end of the placing pieces phase
+	 */
+	public DrawRules(int repetitions, int movesWithoutMill) {
+		if(repetitions < 2 || movesWithoutMill < 1) 
+			throw new IllegalArgumentException();
+		this.repetitions = repetitions;
+		this.movesWithoutMill = movesWithoutMill;
+	}
+	
+	public int getRepetitions() {
+		return repetitions;
+	}
+	
+	public int getMovesWithoutMill() {
+		return movesWithoutMill;
+	}
+}
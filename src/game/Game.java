@@ -1,5 +1,7 @@
 package game;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import game.players.*;
 import game.board.*;
@@ -14,13 +16,79 @@ public class Game {
 		private final Board board;
 		private final Player HumanPlayer;
 		private final AIPlayer AIPlayer;
+		private MoveListener[] listeners = new MoveListener[0];
+		private DrawRules drawRules = DrawRules.DEFAULT;
+		/**
+		 * Position keys (with the player in turn) after every applied move, used to detect repetitions.
+		 * Moves are undone in reverse order, so the history is a stack maintained by applyMove and undoMove.
+		 */
+		private long[] history = new long[256];
+		/**
+		 * For every entry of the history the index of the latest entry reached by a placement or a mill.
+		 * Positions before it can't occur again, so repetition checks stop there.
+		 */
+		private int[] lastIrreversible = new int[256];
+		private int historySize;
+		/**
+		 * Number of history entries per hash bucket. A position can only be a repetition if its
+		 * bucket holds more than one entry, which rules out almost all positions in O(1).
+		 */
+		private final int[] historyBuckets = new int[HISTORY_BUCKETS];
+		private static final int HISTORY_BUCKETS = 4096;
+		/**
+		 * The legal moves of the positions visited last, shared by the validation and the root of the search.
+		 * The moves refer to the board of this game, so a copy of the game starts with an empty cache.
+		 */
+		private final MoveListCache moveListCache = new MoveListCache(MOVE_LIST_CACHE_SIZE);
+		private static final int MOVE_LIST_CACHE_SIZE = 64;
 		
 		public Game(int depth, char HumanSymbol, char AISymbol) {
-			HumanPlayer = new Player(HumanSymbol);
-			AIPlayer = new AIPlayer(AISymbol, depth);
+			this(new Player(HumanSymbol), new AIPlayer(AISymbol, depth));
+		}
+		
+		/**
+		 * Creates a game with the given players, e.g. to let two engines play against each other 
+		 * by putting one of them into the place of the human player
+		 * @param HumanPlayer The player whose moves are validated
+		 * @param AIPlayer The computer player
+		 */
+		public Game(Player HumanPlayer, AIPlayer AIPlayer) {
+			this.HumanPlayer = HumanPlayer;
+			this.AIPlayer = AIPlayer;
 			board = new Board();
 		}
 		
+		/**
+		 * Copy Constructor
+		 * needed by searches running in several threads, each of them needs its own game to apply moves on.
+		 * The players are copies as well, only their piece counts and positions are taken over, the listeners are not copied.
+		 * @param gameToCopy The game to be copied
+		 */
+		public Game(Game gameToCopy) {
+			this(new Player(gameToCopy.HumanPlayer), new AIPlayer(gameToCopy.AIPlayer));
+			for(int i = 0; i < Board.BOARD_SIZE; i++) {
+				Player playerOccupying = gameToCopy.board.getPos(i).getPlayerOccupying();
+				if(playerOccupying != null) {
+					board.getPos(i).setPlayerOccupying(getCorrespondingPlayer(gameToCopy, playerOccupying));
+				}
+			}
+			drawRules = gameToCopy.drawRules;
+			history = gameToCopy.history.clone();
+			lastIrreversible = gameToCopy.lastIrreversible.clone();
+			historySize = gameToCopy.historySize;
+			System.arraycopy(gameToCopy.historyBuckets, 0, historyBuckets, 0, HISTORY_BUCKETS);
+		}
+		
+		/**
+		 * Maps a player of another game (e.g. the game this one was copied from) to the player of this game in the same role
+		 * @param otherGame The game the player belongs to
+		 * @param player The player of otherGame
+		 * @return The player of this game taking the same place as player in otherGame
+		 */
+		public Player getCorrespondingPlayer(Game otherGame, Player player) {
+			return player == otherGame.AIPlayer ? AIPlayer : HumanPlayer;
+		}
+		
 		public Player getHumanPlayer() {
 			return HumanPlayer;
 		}
@@ -132,31 +200,33 @@ public class Game {
 				}		
 			}
 			if(player.getGamePhase() == GamePhase.FLYING_PIECES) {
-				//insert one move into the list for every piece of the player for each unoccupied position of the board, respectively 
-				for(int sourceIndex = 0; sourceIndex < Board.BOARD_SIZE; sourceIndex++) {
-					//source occupied by player?
-					if(board.getPos(sourceIndex).getPlayerOccupying() == player) {
-						for(int destIndex = 0; destIndex < Board.BOARD_SIZE; destIndex++) {
-							//destination unoccupied?
-							if(board.getPos(destIndex).getPlayerOccupying() == null) {
-								Move move = new Move(board.getPos(sourceIndex), board.getPos(destIndex), null);
-								//execute Move partly to test if it creates a mill, but undo it afterwards
-								//no need to apply Move, because the number of pieces does not need to be changed 
-								board.getPos(sourceIndex).setPlayerOccupying(null);
-								board.getPos(destIndex).setPlayerOccupying(player);
-								checkIfMill(player,move,possibleMoves);
-								board.getPos(destIndex).setPlayerOccupying(null);
-								board.getPos(sourceIndex).setPlayerOccupying(player);
-							}
-							
-						}
-					}
-					
-				}
+				//a piece can move to every unoccupied position, which makes too many moves to test them on the board,
+				//so they are generated from the occupied positions as bit masks
+				Player opponent = getOtherPlayer(player);
+				MoveGenerator generator = new MoveGenerator();
+				generator.reset(GamePhase.FLYING_PIECES, player.getOccupiedPositions(), opponent.getOccupiedPositions(), 
+						opponent.getGamePhase() == GamePhase.FLYING_PIECES);
+				generator.addAll(board, possibleMoves);
 			}
 			return possibleMoves;	
 		}
 	
+		/**
+		 * Returns the legal moves of the player in the current position from a cache of recently visited positions,
+		 * so the moves of a turn are generated only once. The search below the root generates its moves itself.
+		 * @param player The player in turn
+		 * @return The unmodifiable list of moves in the order of generatePossibleMoves, to be copied before sorting or changing it
+		 */
+		public List<Move> getLegalMoves(Player player) {
+			long key = getPositionKey(player);
+			List<Move> moves = moveListCache.get(key);
+			if(moves == null) {
+				moves = Collections.unmodifiableList(generatePossibleMoves(player));
+				moveListCache.put(key, moves);
+			}
+			return moves;
+		}
+	
 		/**
 		 * returns a boolean because it is used to determine whether a move by the human player is valid or not
 		 * @param move
@@ -166,61 +236,80 @@ public class Game {
 			//If the player is a human, the move has first to be validated, because humans make mistakes. 
 			//The AI does only create valid moves ;)
 			if(player == HumanPlayer) {
-				if(!checkHumanMove(move)) {
+				if(validateMove(move.toCode(), player) != MoveError.NONE) {
 					return false;
 				}
 			}
-			Position position = move.getDestination();
+			applyMoveCode(move.toCode(), player);
+			return true;
+		}
+		
+		/**
+		 * Applies a move given as move code without any validation.
+		 * Used for the replay of recorded games and wherever moves are known to be valid
+		 * @param moveCode The code of the move, see Move.toCode()
+		 * @param player Player executing move
+		 */
+		public void applyMoveCode(int moveCode, Player player) {
+			Position position = board.getPos(Move.destinationOf(moveCode));
 			position.setPlayerOccupying(player);
 			//if player is in the placing phase, increment the number of placed pieces
-			if(move.getSource() == null) {
+			int source = Move.sourceOf(moveCode);
+			if(source == Move.NO_POSITION) {
 				player.incNumOfPlacedPieces();
 			}
 			else {
 				//if the player is not in the placing phase anymore, the source position has the be set occupied
-				Position source = move.getSource();
-				source.setPlayerOccupying(null);
+				board.getPos(source).setPlayerOccupying(null);
 			}
-			if(move.getPieceToRemove() != null) {
+			int toRemove = Move.pieceToRemoveOf(moveCode);
+			if(toRemove != Move.NO_POSITION) {
 				//if the move made a mill, set the position of the piece to remove unoccupied
-				Position toRemove = move.getPieceToRemove();
-				toRemove.setPlayerOccupying(null);
+				board.getPos(toRemove).setPlayerOccupying(null);
 				getOtherPlayer(player).decNumOfRemainingPieces();
 			}
-			return true;
+			pushHistory(getPositionKey(getOtherPlayer(player)), source == Move.NO_POSITION || toRemove != Move.NO_POSITION);
+			for(MoveListener listener : listeners) {
+				listener.moveApplied(moveCode, player);
+			}
 		}
 		
 		/**
-		 *This method is used in applyMove to validate the move, if the executing player is a human player
-		 *@param move 
-		 *@return Is the move valid?
+		 * Registers a listener notified about every applied and undone move
+		 * @param listener
 		 */
-		private boolean checkHumanMove(Move move) {
-			//for every game phase the destination position has to be unoccupied
-			if(!(move.getDestination().getPlayerOccupying() == null)) {
-				return false;
-			}
-			//after the placing pieces phase the move must have a source position occupied by the player executing the move
-			else if(HumanPlayer.getGamePhase() == GamePhase.FLYING_PIECES || HumanPlayer.getGamePhase() == GamePhase.MOVING_PIECES) {
-				if(move.getSource().getPlayerOccupying() != HumanPlayer) {
-					return false;
-				}
-			}
-			//in the moving pieces phase the destination must be directly accessible from the source
-			if(HumanPlayer.getGamePhase() == GamePhase.MOVING_PIECES) {
-				//check if the destination is in the adjacency list of the source position
-				List<Position> adjPos = move.getSource().getAdjacentPositions();
-				for(Position p: adjPos) {
-					if(move.getDestination() == p) {
-						//the destination is in the adjacency list, so the move is valid 
-						return true;
-					}
-				}
-				//the destination is not in the adjacency list, so the move is invalid
-				return false;
-			}
-			return true;
-			
+		public void addMoveListener(MoveListener listener) {
+			MoveListener[] extended = Arrays.copyOf(listeners, listeners.length + 1);
+			extended[listeners.length] = listener;
+			listeners = extended;
+		}
+		
+		public void removeMoveListener(MoveListener listener) {
+			List<MoveListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+			remaining.remove(listener);
+			listeners = remaining.toArray(new MoveListener[0]);
+		}
+		
+		/**
+		 * Validates a move of a player in one pass, without changing the board. 
+		 * A move closing a mill is only valid together with a removable piece of the opponent.
+		 * @param moveCode The code of the move, see Move.toCode()
+		 * @param player Player executing move
+		 * @return NONE if the move is valid, otherwise the reason why it is not
+		 */
+		public MoveError validateMove(int moveCode, Player player) {
+			Player opponent = getOtherPlayer(player);
+			return MoveGenerator.validate(moveCode, player.getGamePhase(), player.getOccupiedPositions(), 
+					opponent.getOccupiedPositions(), opponent.getGamePhase() == GamePhase.FLYING_PIECES);
+		}
+		
+		/**
+		 * @param moveCode The code of a move, its piece to remove is ignored
+		 * @param player Player executing move
+		 * @return Does the move close a mill?
+		 */
+		public boolean closesMill(int moveCode, Player player) {
+			return MoveGenerator.closesMill(moveCode, player.getOccupiedPositions(), getOtherPlayer(player).getOccupiedPositions());
 		}
 		
 		/**
@@ -229,21 +318,33 @@ public class Game {
 		 * @param player Player executing move
 		 */
 		public void undoMove(Move move, Player player) {
+			undoMoveCode(move.toCode(), player);
+		}
+		
+		/**
+		 * Undoes a move given as move code, the counterpart of applyMoveCode
+		 * @param moveCode The code of the move
+		 * @param player Player executing move
+		 */
+		public void undoMoveCode(int moveCode, Player player) {
 			//analogous to applyMove
-			Position position = move.getDestination();
-			position.setPlayerOccupying(null);
-			if(move.getSource() == null) {
+			board.getPos(Move.destinationOf(moveCode)).setPlayerOccupying(null);
+			int source = Move.sourceOf(moveCode);
+			if(source == Move.NO_POSITION) {
 				player.decNumOfPlacedPieces();
 			}
 			else {
-				Position source = move.getSource();
-				source.setPlayerOccupying(player);
+				board.getPos(source).setPlayerOccupying(player);
 			}
-			if(move.getPieceToRemove() != null) {
-				Position toRestore = move.getPieceToRemove();
-				toRestore.setPlayerOccupying(getOtherPlayer(player));
+			int toRestore = Move.pieceToRemoveOf(moveCode);
+			if(toRestore != Move.NO_POSITION) {
+				board.getPos(toRestore).setPlayerOccupying(getOtherPlayer(player));
 				getOtherPlayer(player).incNumOfRemainingPieces();
 			}
+			popHistory();
+			for(MoveListener listener : listeners) {
+				listener.moveUndone(moveCode, player);
+			}
 		}
 		
 		/**
@@ -364,17 +465,27 @@ public class Game {
 			}
 			board.getPos(index).setPlayerOccupying(null);
 			getOtherPlayer(removingPlayer).decNumOfRemainingPieces();
+			//the removal belongs to the last move, which becomes irreversible
+			if(historySize > 0) {
+				popHistory();
+				pushHistory(getPositionKey(getOtherPlayer(removingPlayer)), true);
+			}
+			for(MoveListener listener : listeners) {
+				listener.pieceRemoved(index, removingPlayer);
+			}
 			return true;
 			
 		}
 		
 		/**
-		 * Determines whether a player lost.
+		 * Determines whether a player lost. Whether the player can move is told by the bit masks of the board, 
+		 * so no moves are generated and the method is cheap enough for every node of the search.
 		 * @param currentPlayer 
 		 * @return Did currentPlayer loose?
 		 */
 		public boolean hasLost(Player currentPlayer) {
-			return currentPlayer.getNumOfRemainingPieces() <= 2 || generatePossibleMoves(currentPlayer).size() == 0;
+			return currentPlayer.getNumOfRemainingPieces() <= 2 
+					|| !MoveGenerator.hasMoves(currentPlayer.getGamePhase(), currentPlayer.getOccupiedPositions(), getOtherPlayer(currentPlayer).getOccupiedPositions());
 		}
 		
 		/**
@@ -385,4 +496,117 @@ public class Game {
 			return currentPlayer.getNumOfRemainingPieces() <= 2 || possibleMoves.size() == 0;
 		}
 		
+		public DrawRules getDrawRules() {
+			return drawRules;
+		}
+		
+		public void setDrawRules(DrawRules drawRules) {
+			this.drawRules = drawRules;
+		}
+		
+		private void pushHistory(long key, boolean irreversible) {
+			if(historySize == history.length) {
+				history = Arrays.copyOf(history, historySize * 2);
+				lastIrreversible = Arrays.copyOf(lastIrreversible, historySize * 2);
+			}
+			history[historySize] = key;
+			lastIrreversible[historySize] = irreversible || historySize == 0 ? historySize : lastIrreversible[historySize - 1];
+			historyBuckets[bucket(key)]++;
+			historySize++;
+		}
+		
+		private void popHistory() {
+			historySize--;
+			historyBuckets[bucket(history[historySize])]--;
+		}
+		
+		private static int bucket(long key) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 52);
+		}
+		
+		/**
+		 * Counts how often the current position occurred since the last placement or mill, including the current occurrence.
+		 * @return The number of occurrences, 1 if the position is no repetition or no move was applied yet
+		 */
+		public int getRepetitionCount() {
+			if(historySize == 0) {
+				return 1;
+			}
+			int top = historySize - 1;
+			long key = history[top];
+			if(historyBuckets[bucket(key)] <= 1) {
+				return 1;
+			}
+			int count = 1;
+			//only positions with the same player in turn can be equal, so every second entry is compared
+			for(int i = top - 2; i >= lastIrreversible[top]; i -= 2) {
+				if(history[i] == key) {
+					count++;
+				}
+			}
+			return count;
+		}
+		
+		/**
+		 * Used by the search to treat a position that occurred before as draw, 
+		 * since repeating it can only lead to the same positions again
+		 * @return Did the current position occur before?
+		 */
+		public boolean isRepetition() {
+			return getRepetitionCount() > 1;
+		}
+		
+		/**
+		 * Decides without applying the move whether a move neither placing a piece nor closing a mill 
+		 * leads to a position the search treats as draw: a repetition or a position reaching the limit of moves without mill.
+		 * The same as applying the move and asking isRepetition and getMovesWithoutMill.
+		 * @param key The key of the position after the move
+		 * @return Is the position after the move a repetition or at the limit of moves without mill?
+		 */
+		public boolean isDrawnAfterReversibleMove(long key) {
+			if(historySize == 0) {
+				//the first entry of the history counts as irreversible
+				return false;
+			}
+			int first = lastIrreversible[historySize - 1];
+			if(historySize - first >= drawRules.getMovesWithoutMill()) {
+				return true;
+			}
+			if(historyBuckets[bucket(key)] == 0) {
+				return false;
+			}
+			for(int i = historySize - 2; i >= first; i -= 2) {
+				if(history[i] == key) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * @return Number of moves since the last mill or the end of the placing pieces phase
+		 */
+		public int getMovesWithoutMill() {
+			return historySize == 0 ? 0 : historySize - 1 - lastIrreversible[historySize - 1];
+		}
+		
+		/**
+		 * Determines whether the game ended in a draw according to the draw rules
+		 * @return Is the game a draw?
+		 */
+		public boolean isDraw() {
+			return getMovesWithoutMill() >= drawRules.getMovesWithoutMill() 
+					|| getRepetitionCount() >= drawRules.getRepetitions();
+		}
+		
+		/**
+		 * Packs the current position into a single long, which identifies it uniquely
+		 * and can be used as key for caches and files, see PositionCodec
+		 * @param sideToMove The player in turn
+		 * @return The key of the position
+		 */
+		public long getPositionKey(Player sideToMove) {
+			return PositionCodec.encode(this, sideToMove);
+		}
+		
 }
@@ -0,0 +1,133 @@
+package game;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import game.board.*;
+
+/**
+ * Remembers the legal moves of the positions a game visited last, see Game.getLegalMoves.
+ * A turn asks for the moves of the same position several times (the time manager counts them, the search needs
+ * the root moves, a move from outside is validated against them), and with the cache they are generated once.
+ *
+ * The cache holds a fixed number of positions and evicts by the CLOCK algorithm: every slot has a reference bit,
+ * set on every hit. To make room, the hand sweeps over the slots, clearing the bits it passes, and replaces the first
+ * slot whose bit is already clear. So positions still in use survive, much like with LRU but without reordering on hits.
+ *
+ * The slots of the positions are found by an open-addressed table of primitive keys with linear probing,
+ * so neither a probe nor a store allocates anything.
+ *
+ * The lists are unmodifiable, since they are handed out again and again.
+ */
+class MoveListCache {
+	private final long[] keys;
+	private final List<List<Move>> lists;
+	private final boolean[] referenced;
+	/**
+	 * The index: the keys and their slots by hash, a slot of -1 marks a free entry
+	 */
+	private final long[] indexKeys;
+	private final int[] indexSlots;
+	private final int indexMask;
+	private int size;
+	private int hand;
+
+	/**
+	 * @param capacity Number of positions held
+	 */
+	MoveListCache(int capacity) {
+		keys = new long[capacity];
+		lists = new ArrayList<>(capacity);
+		referenced = new boolean[capacity];
+		//at most half of the index is used, which keeps the probe sequences short
+		int indexSize = Integer.highestOneBit(Math.max(1, capacity) * 2) * 2;
+		indexKeys = new long[indexSize];
+		indexSlots = new int[indexSize];
+		indexMask = indexSize - 1;
+		Arrays.fill(indexSlots, -1);
+	}
+
+	/**
+	 * @param key The position key with the player in turn, see Game.getPositionKey
+	 * @return The moves of the position or null if they aren't cached
+	 */
+	List<Move> get(long key) {
+		int slot = find(key);
+		if(slot < 0) {
+			return null;
+		}
+		referenced[slot] = true;
+		return lists.get(slot);
+	}
+
+	/**
+	 * Caches the moves of a position, which must not be cached yet
+	 * @param key The position key with the player in turn
+	 * @param moves The unmodifiable moves
+	 */
+	void put(long key, List<Move> moves) {
+		int slot;
+		if(size < keys.length) {
+			slot = size++;
+			lists.add(moves);
+		}
+		else {
+			while(referenced[hand]) {
+				referenced[hand] = false;
+				hand = (hand + 1) % keys.length;
+			}
+			slot = hand;
+			hand = (hand + 1) % keys.length;
+			remove(keys[slot]);
+			lists.set(slot, moves);
+		}
+		keys[slot] = key;
+		referenced[slot] = false;
+		insert(key, slot);
+	}
+
+	private int index(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & indexMask;
+	}
+
+	/**
+	 * @return The slot of the position or -1 if it isn't cached
+	 */
+	private int find(long key) {
+		for(int i = index(key); indexSlots[i] >= 0; i = (i + 1) & indexMask) {
+			if(indexKeys[i] == key) {
+				return indexSlots[i];
+			}
+		}
+		return -1;
+	}
+
+	private void insert(long key, int slot) {
+		int i = index(key);
+		while(indexSlots[i] >= 0) {
+			i = (i + 1) & indexMask;
+		}
+		indexKeys[i] = key;
+		indexSlots[i] = slot;
+	}
+
+	/**
+	 * Removes a key from the index and moves the entries after it back,
+	 * so no probe sequence is interrupted by the free entry
+	 */
+	private void remove(long key) {
+		int i = index(key);
+		while(indexKeys[i] != key || indexSlots[i] < 0) {
+			i = (i + 1) & indexMask;
+		}
+		for(int j = (i + 1) & indexMask; indexSlots[j] >= 0; j = (j + 1) & indexMask) {
+			int home = index(indexKeys[j]);
+			//the entry at j may fill the gap at i if its home doesn't lie cyclically in (i, j]
+			if(((j - home) & indexMask) >= ((j - i) & indexMask)) {
+				indexKeys[i] = indexKeys[j];
+				indexSlots[i] = indexSlots[j];
+				i = j;
+			}
+		}
+		indexSlots[i] = -1;
+	}
+}
@@ -0,0 +1,32 @@
+package game;
+import game.players.*;
+
+/**
+ * Listener notified by the game about every change of the position,
+ * e.g. to record the moves of a game. 
+ * Moves are passed as move codes (see Move.toCode()), so no objects are created for the notification.
+ * Since the search applies and undoes moves as well, listeners have to handle undone moves.
+ */
+public interface MoveListener {
+	
+	/**
+	 * Called after a move was applied
+	 * @param moveCode The code of the move
+	 * @param player The player executing the move
+	 */
+	void moveApplied(int moveCode, Player player);
+	
+	/**
+	 * Called after a move was undone
+	 * @param moveCode The code of the move
+	 * @param player The player that executed the move
+	 */
+	void moveUndone(int moveCode, Player player);
+	
+	/**
+	 * Called after a piece was removed separately from its move, see Game.removePiece
+	 * @param index The index of the removed piece
+	 * @param removingPlayer The player removing the piece
+	 */
+	void pieceRemoved(int index, Player removingPlayer);
+}
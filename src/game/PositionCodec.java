@@ -0,0 +1,219 @@
+package game;
+import game.board.*;
+import game.players.*;
+
+/**
+ * The canonical encoding of a position in a single long, used as key by all caches, stores and record formats,
+ * and its human readable string form.
+ *
+ * Bits 0-23 hold the positions of the white player, bits 24-47 those of the black player,
+ * bit 48 is set if black is to move and bits 49-52 and 53-56 hold the number of pieces placed by white and black.
+ * White is the human player of a Game and moves first, black is the AI player.
+ * The number of remaining pieces of a player is the number of its pieces on the board plus the pieces still to place,
+ * so it doesn't need to be stored.
+ *
+ * The string form lists the board row by row as drawn in Board ('W', 'B' or '.' for every position, the rows separated by '/'),
+ * then the player to move ('w' or 'b') and the pieces placed by white and black, e.g. 
+ * "W../.B./.../....../.../.../... w 1 1"
+ */
+public final class PositionCodec {
+	public static final int PIECES = 9;
+	private static final long BOARD_MASK = (1L << Board.BOARD_SIZE) - 1;
+	private static final int BLACK_TO_MOVE = 48;
+	private static final int WHITE_PLACED = 49;
+	private static final int BLACK_PLACED = 53;
+	/**
+	 * Number of positions of each row of the string form
+	 */
+	private static final int[] ROWS = {3, 3, 3, 6, 3, 3, 3};
+
+	private PositionCodec() {
+	}
+
+	/**
+	 * Encodes a position given by its parts, e.g. a position that isn't on a board
+	 * @param whitePositions The occupied positions of white as bit mask
+	 * @param blackPositions The occupied positions of black as bit mask
+	 * @param blackToMove Is black in turn?
+	 * @param whitePlaced The pieces placed by white
+	 * @param blackPlaced The pieces placed by black
+	 * @return The key of the position
+	 */
+	public static long encode(int whitePositions, int blackPositions, boolean blackToMove, int whitePlaced, int blackPlaced) {
+		long key = whitePositions & BOARD_MASK;
+		key |= (blackPositions & BOARD_MASK) << Board.BOARD_SIZE;
+		if(blackToMove) {
+			key |= 1L << BLACK_TO_MOVE;
+		}
+		key |= (long) whitePlaced << WHITE_PLACED;
+		key |= (long) blackPlaced << BLACK_PLACED;
+		return key;
+	}
+
+	/**
+	 * Encodes the position of a game
+	 * @param game The game
+	 * @param sideToMove The player in turn
+	 * @return The key of the position
+	 */
+	public static long encode(Game game, Player sideToMove) {
+		Player white = game.getHumanPlayer(), black = game.getAIPlayer();
+		return encode(white.getOccupiedPositions(), black.getOccupiedPositions(), sideToMove == black,
+				white.getNumOfPlacedPieces(), black.getNumOfPlacedPieces());
+	}
+
+	public static int whitePositions(long key) {
+		return (int) (key & BOARD_MASK);
+	}
+
+	public static int blackPositions(long key) {
+		return (int) (key >>> Board.BOARD_SIZE & BOARD_MASK);
+	}
+
+	public static boolean isBlackToMove(long key) {
+		return (key & 1L << BLACK_TO_MOVE) != 0;
+	}
+
+	public static int whitePlaced(long key) {
+		return (int) (key >>> WHITE_PLACED) & 0xF;
+	}
+
+	public static int blackPlaced(long key) {
+		return (int) (key >>> BLACK_PLACED) & 0xF;
+	}
+
+	public static int whiteRemaining(long key) {
+		return Integer.bitCount(whitePositions(key)) + PIECES - whitePlaced(key);
+	}
+
+	public static int blackRemaining(long key) {
+		return Integer.bitCount(blackPositions(key)) + PIECES - blackPlaced(key);
+	}
+
+	/**
+	 * Checks whether a key describes a position that can occur: no position occupied twice, at most 9 pieces placed
+	 * and not more pieces on the board than placed
+	 * @param key The key
+	 * @return Is the key valid?
+	 */
+	public static boolean isValid(long key) {
+		return key >>> BLACK_PLACED + 4 == 0
+				&& (whitePositions(key) & blackPositions(key)) == 0
+				&& whitePlaced(key) <= PIECES && blackPlaced(key) <= PIECES
+				&& Integer.bitCount(whitePositions(key)) <= whitePlaced(key)
+				&& Integer.bitCount(blackPositions(key)) <= blackPlaced(key);
+	}
+
+	/**
+	 * Creates a game in the position of a key. The history of the game starts with this position.
+	 * @param key A valid key
+	 * @param depth The depth of the search of the AI player
+	 * @return The game, its human player is white
+	 * @throws IllegalArgumentException if the key isn't valid
+	 */
+	public static Game toGame(long key, int depth) throws IllegalArgumentException {
+		if(!isValid(key)) {
+			throw new IllegalArgumentException("Invalid position key " + Long.toHexString(key));
+		}
+		Game game = new Game(depth, 'W', 'B');
+		setUp(game, game.getHumanPlayer(), whitePositions(key), whitePlaced(key), whiteRemaining(key));
+		setUp(game, game.getAIPlayer(), blackPositions(key), blackPlaced(key), blackRemaining(key));
+		return game;
+	}
+
+	/**
+	 * @param key The key of the position of game
+	 * @param game A game created by toGame
+	 * @return The player in turn
+	 */
+	public static Player sideToMove(long key, Game game) {
+		return isBlackToMove(key) ? game.getAIPlayer() : game.getHumanPlayer();
+	}
+
+	private static void setUp(Game game, Player player, int positions, int placed, int remaining) {
+		for(int i = 0; i < Board.BOARD_SIZE; i++) {
+			if((positions & 1 << i) != 0) {
+				game.getBoard().getPos(i).setPlayerOccupying(player);
+			}
+		}
+		for(int i = 0; i < placed; i++) {
+			player.incNumOfPlacedPieces();
+		}
+		for(int i = remaining; i < PIECES; i++) {
+			player.decNumOfRemainingPieces();
+		}
+	}
+
+	/**
+	 * @param key A valid key
+	 * @return The string form of the position
+	 */
+	public static String toString(long key) {
+		StringBuilder sb = new StringBuilder(48);
+		int white = whitePositions(key), black = blackPositions(key), index = 0;
+		for(int r = 0; r < ROWS.length; r++) {
+			if(r > 0) {
+				sb.append('/');
+			}
+			for(int i = 0; i < ROWS[r]; i++, index++) {
+				sb.append((white & 1 << index) != 0 ? 'W' : (black & 1 << index) != 0 ? 'B' : '.');
+			}
+		}
+		sb.append(' ').append(isBlackToMove(key) ? 'b' : 'w')
+			.append(' ').append(whitePlaced(key))
+			.append(' ').append(blackPlaced(key));
+		return sb.toString();
+	}
+
+	/**
+	 * Parses the string form of a position
+	 * @param position The string form
+	 * @return The key of the position
+	 * @throws IllegalArgumentException if the string is malformed or describes an invalid position
+	 */
+	public static long parse(String position) throws IllegalArgumentException {
+		String[] fields = position.trim().split("\\s+");
+		if(fields.length != 4) {
+			throw new IllegalArgumentException("Malformed position " + position);
+		}
+		String[] rows = fields[0].split("/");
+		if(rows.length != ROWS.length) {
+			throw new IllegalArgumentException("Malformed board " + fields[0]);
+		}
+		int white = 0, black = 0, index = 0;
+		for(int r = 0; r < ROWS.length; r++) {
+			if(rows[r].length() != ROWS[r]) {
+				throw new IllegalArgumentException("Malformed board " + fields[0]);
+			}
+			for(int i = 0; i < ROWS[r]; i++, index++) {
+				switch(rows[r].charAt(i)) {
+					case 'W':
+						white |= 1 << index;
+						break;
+					case 'B':
+						black |= 1 << index;
+						break;
+					case '.':
+						break;
+					default:
+						throw new IllegalArgumentException("Malformed board " + fields[0]);
+				}
+			}
+		}
+		if(!fields[1].equals("w") && !fields[1].equals("b")) {
+			throw new IllegalArgumentException("Malformed side to move " + fields[1]);
+		}
+		long key;
+		try {
+			key = encode(white, black, fields[1].equals("b"), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+		}
+		catch(NumberFormatException x) {
+			throw new IllegalArgumentException("Malformed placed pieces in " + position);
+		}
+		//negative counts set bits above the key and fail the validation as well
+		if(!isValid(key)) {
+			throw new IllegalArgumentException("Invalid position " + position);
+		}
+		return key;
+	}
+}
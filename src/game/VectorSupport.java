@@ -0,0 +1,24 @@
+package game;
+
+/**
+ * Tells whether the NeuralEvaluator may use the Vector API of the incubator module jdk.incubator.vector.
+ *
+ * The module is only resolved if the JVM is started with --add-modules jdk.incubator.vector (see run.sh),
+ * otherwise the classes using it must not be touched and the evaluator runs its scalar loops.
+ * The system property game.vector=false forces the scalar loops even if the module is there, to compare both.
+ */
+public final class VectorSupport {
+	public static final String MODULE = "jdk.incubator.vector";
+	private static final boolean AVAILABLE = !"false".equals(System.getProperty("game.vector"))
+			&& ModuleLayer.boot().findModule(MODULE).isPresent();
+
+	private VectorSupport() {
+	}
+
+	/**
+	 * @return Can the Vector API be used?
+	 */
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+}
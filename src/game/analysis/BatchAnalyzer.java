@@ -0,0 +1,383 @@
+package game.analysis;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import game.*;
+import game.board.*;
+import game.players.*;
+import game.record.*;
+
+/**
+ * Annotates every position of a game record (text or binary, see GameRecordSource) with 
+ * the score and the best move found by the Alpha Beta search of the AIPlayer.
+ *
+ * The record is streamed game by game and the games are analyzed by a pool of workers,
+ * while the number of games in flight is bounded, so the record may be far larger than the memory.
+ * The results are appended to the output file in the order of the games. A checkpoint file next
+ * to the output remembers how many games are completely written, so an interrupted run continues
+ * where it stopped when started again with the same arguments.
+ *
+ * Every output line has the tab separated fields: game index, ply, side to move (W moves first),
+ * position key in hex, best move in record notation and score for the side to move.
+ * Positions where the side to move has lost are written with "-" as move and score.
+ *
+ * With --store the results are also kept in a persistent PositionStore, which later runs 
+ * (of the same or other records) look up before searching a position.
+ * The search runs in the deterministic mode of the AIPlayer, so runs with the same seed give the same results
+ * for the same positions, no matter how the games are distributed among the workers.
+ *
+ * Usage: BatchAnalyzer input output [--threads n] [--depth d] [--cache-bits b] [--store file] [--seed s]
+ */
+public class BatchAnalyzer {
+	private static final long REPORT_INTERVAL_SECONDS = 10;
+	private static final long CHECKPOINT_INTERVAL_MILLIS = 1000;
+	private static final int STORE_INITIAL_BITS = 20;
+
+	private final Path input;
+	private final Path output;
+	private final Path checkpoint;
+	private final int threads;
+	private final int depth;
+	private final ResultCache cache;
+	private final Path storeFile;
+	private final long seed;
+	private PositionStore store;
+
+	private final AtomicLong positions = new AtomicLong();
+	private final AtomicLong searches = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	//state of the ordered writer, guarded by this
+	private final Map<Long, byte[]> pendingGames = new TreeMap<>();
+	private final Semaphore gamesInFlight;
+	private FileChannel out;
+	private long nextGameToWrite;
+	private long bytesWritten;
+	private long lastCheckpoint;
+	private IOException writeError;
+
+	/**
+	 * @param input The game record
+	 * @param output The file of the results
+	 * @param threads Number of workers
+	 * @param depth Depth of the search
+	 * @param cacheBits The cache holds 2^cacheBits positions
+	 * @param storeFile The file of the persistent store or null to analyze without
+	 * @param seed The seed of the choice among equally scored moves
+	 */
+	public BatchAnalyzer(Path input, Path output, int threads, int depth, int cacheBits, Path storeFile, long seed) {
+		this.input = input;
+		this.output = output;
+		this.checkpoint = Paths.get(output.toString() + ".ckpt");
+		this.threads = threads;
+		this.depth = depth;
+		this.cache = new ResultCache(cacheBits);
+		this.storeFile = storeFile;
+		this.seed = seed;
+		this.gamesInFlight = new Semaphore(threads * 4);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.err.println("Usage: BatchAnalyzer input output [--threads n] [--depth d] [--cache-bits b] [--store file] [--seed s]");
+			System.exit(1);
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		int depth = 3;
+		int cacheBits = 20;
+		Path storeFile = null;
+		long seed = 1;
+		for(int i = 2; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				case "--depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "--cache-bits":
+					cacheBits = Integer.parseInt(args[i + 1]);
+					break;
+				case "--store":
+					storeFile = Paths.get(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+		new BatchAnalyzer(Paths.get(args[0]), Paths.get(args[1]), threads, depth, cacheBits, storeFile, seed).run();
+	}
+
+	/**
+	 * Analyzes the whole record, continuing an interrupted run if a checkpoint exists
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run() throws IOException, InterruptedException {
+		long gamesToSkip = restoreCheckpoint();
+		try {
+			if(storeFile != null) {
+				store = PositionStore.open(storeFile, STORE_INITIAL_BITS);
+			}
+			analyze(gamesToSkip);
+		}
+		finally {
+			synchronized(this) {
+				try {
+					writeCheckpoint();
+				}
+				finally {
+					out.close();
+				}
+			}
+			if(store != null) {
+				store.close();
+			}
+		}
+		if(writeError != null) {
+			throw writeError;
+		}
+	}
+
+	/**
+	 * Feeds the games after the checkpoint to the workers and waits until they are written
+	 * @param gamesToSkip The number of games already analyzed
+	 */
+	private void analyze(long gamesToSkip) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "analysis-reporter");
+			t.setDaemon(true);
+			return t;
+		});
+		reporter.scheduleAtFixedRate(() -> report(start), REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+		try(GameRecordSource reader = GameRecordSource.open(input)) {
+			int[] moves;
+			while((moves = reader.nextGame()) != null) {
+				long gameIndex = reader.getGameIndex();
+				if(gameIndex < gamesToSkip) {
+					continue;
+				}
+				//blocks if the workers or the writer fall behind, this bounds the memory usage
+				gamesInFlight.acquire();
+				final int[] gameMoves = moves;
+				workers.execute(() -> {
+					byte[] lines = null;
+					try {
+						lines = analyzeGame(gameIndex, gameMoves);
+					}
+					catch(Throwable x) {
+						lines = ("# game " + gameIndex + ": " + x + "\n").getBytes(StandardCharsets.UTF_8);
+						if(x instanceof Error) {
+							throw (Error) x;
+						}
+					}
+					finally {
+						//the writer waits for every game, so a failing game has to be completed as well
+						complete(gameIndex, lines != null ? lines : new byte[0]);
+					}
+				});
+			}
+		}
+		finally {
+			workers.shutdown();
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			reporter.shutdownNow();
+		}
+		report(start);
+	}
+
+	/**
+	 * Replays a game and annotates every position reached
+	 * @param gameIndex Index of the game in the record
+	 * @param moves The codes of the moves of the game
+	 * @return The output lines of the game
+	 */
+	private byte[] analyzeGame(long gameIndex, int[] moves) {
+		StringBuilder sb = new StringBuilder();
+		Game game = new Game(depth, 'W', 'B');
+		game.getAIPlayer().enableDeterministicMode(seed);
+		//the human player moves first, so it represents white in the record
+		Player player = game.getHumanPlayer();
+		for(int ply = 0; ; ply++) {
+			annotate(game, player, gameIndex, ply, sb);
+			if(ply == moves.length) {
+				break;
+			}
+			if(!isLegal(game, player, moves[ply])) {
+				sb.append("# game ").append(gameIndex).append(": illegal move ")
+					.append(moves[ply] < 0 ? "?" : MoveNotation.format(moves[ply]))
+					.append(" at ply ").append(ply).append('\n');
+				break;
+			}
+			game.applyMoveCode(moves[ply], player);
+			player = game.getOtherPlayer(player);
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return Is the move one of the generated moves of the player?
+	 */
+	private boolean isLegal(Game game, Player player, int moveCode) {
+		if(moveCode < 0) {
+			return false;
+		}
+		for(Move m : game.getLegalMoves(player)) {
+			if(m.toCode() == moveCode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void annotate(Game game, Player player, long gameIndex, int ply, StringBuilder sb) {
+		positions.incrementAndGet();
+		long key = game.getPositionKey(player);
+		sb.append(gameIndex).append('\t').append(ply).append('\t')
+			.append(player == game.getHumanPlayer() ? 'W' : 'B').append('\t')
+			.append(Long.toHexString(key)).append('\t');
+
+		if(game.hasLost(player)) {
+			sb.append("-\t-\n");
+			return;
+		}
+		long cached = cache.get(key);
+		if(cached < 0 && store != null) {
+			//results of shallower searches don't count
+			long stored = store.get(key);
+			if(stored >= 0 && PositionStore.depth(stored) >= depth && PositionStore.move(stored) >= 0) {
+				cached = pack(PositionStore.move(stored), PositionStore.score(stored));
+				cache.put(key, cached);
+			}
+		}
+		if(cached >= 0) {
+			cacheHits.incrementAndGet();
+		}
+		else {
+			searches.incrementAndGet();
+			SearchResult result = game.getAIPlayer().search(game, player);
+			cached = pack(result.getMove().toCode(), result.getScore());
+			cache.put(key, cached);
+			if(store != null) {
+				try {
+					store.put(key, result.getScore(), result.getMove().toCode(), depth);
+				}
+				catch(IOException x) {
+					throw new UncheckedIOException(x);
+				}
+			}
+		}
+		sb.append(MoveNotation.format((int) (cached >>> 32))).append('\t').append((int) cached).append('\n');
+	}
+
+	/**
+	 * Packs a move and its score into the 63 bits available in the cache:
+	 * the score in the lower 32 bits followed by the move code
+	 */
+	private static long pack(int moveCode, int score) {
+		return (score & 0xFFFFFFFFL) | (long) moveCode << 32;
+	}
+
+	/**
+	 * Called by the workers. Writes the games in the order of the record,
+	 * games finished early wait until their predecessors are written.
+	 */
+	private synchronized void complete(long gameIndex, byte[] lines) {
+		pendingGames.put(gameIndex, lines);
+		byte[] next;
+		while((next = pendingGames.remove(nextGameToWrite)) != null) {
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(next);
+				while(buffer.hasRemaining()) {
+					bytesWritten += out.write(buffer);
+				}
+				nextGameToWrite++;
+				if(System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS) {
+					writeCheckpoint();
+				}
+			}
+			catch(IOException x) {
+				//keep the first error and let run() report it, the checkpoint stays at the last good game
+				if(writeError == null) {
+					writeError = x;
+				}
+			}
+			gamesInFlight.release();
+		}
+	}
+
+	/**
+	 * Opens the output and truncates everything written after the last checkpoint
+	 * @return The number of games already analyzed
+	 * @throws IOException if the checkpoint is malformed or the output can't be opened, the output is closed then
+	 */
+	private synchronized long restoreCheckpoint() throws IOException {
+		long games = 0, bytes = 0;
+		if(Files.exists(checkpoint)) {
+			String[] fields = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim().split("\\s+");
+			try {
+				games = Long.parseLong(fields[0]);
+				bytes = Long.parseLong(fields[1]);
+			}
+			catch(NumberFormatException | ArrayIndexOutOfBoundsException x) {
+				throw new IOException("Malformed checkpoint " + checkpoint, x);
+			}
+			System.err.println("Resuming after game " + games);
+		}
+		FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			channel.truncate(bytes);
+			channel.position(bytes);
+		}
+		catch(IOException | RuntimeException x) {
+			channel.close();
+			throw x;
+		}
+		out = channel;
+		nextGameToWrite = games;
+		bytesWritten = bytes;
+		return games;
+	}
+
+	/**
+	 * Persists the written output before recording it in the checkpoint,
+	 * the checkpoint itself is replaced atomically
+	 */
+	private void writeCheckpoint() throws IOException {
+		out.force(false);
+		Path tmp = Paths.get(checkpoint.toString() + ".tmp");
+		Files.write(tmp, (nextGameToWrite + " " + bytesWritten + "\n").getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		lastCheckpoint = System.currentTimeMillis();
+	}
+
+	private void report(long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long p = positions.get();
+		System.err.printf("%d positions (%d searched, %d deduplicated), %.1f positions/s%s%n",
+				p, searches.get(), cacheHits.get(), p / Math.max(seconds, 1e-9), 
+				store == null ? "" : ", " + store.size() + " stored");
+	}
+}
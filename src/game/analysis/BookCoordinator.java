@@ -0,0 +1,392 @@
+package game.analysis;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import game.*;
+import game.board.*;
+import game.players.*;
+import game.analysis.BookWorker.BookUnit;
+
+/**
+ * Generates an opening book, the search results of all positions up to a given ply, with several worker processes
+ * and merges them into a PositionStore, which BatchAnalyzer and other jobs can use with --store.
+ *
+ * The positions are partitioned by the lines of the opening leading to them: the lines of the first split plies
+ * are grouped into work units, and the positions before the split ply form one unit of their own.
+ * The coordinator starts a BookWorker process per unit, at most workers at once, and talks to them through the files
+ * of the work directory only: units.txt describes the units, a worker writes the results of its unit to unit-id.res.
+ * So a worker may run anywhere the work directory is visible, the java command can be replaced by a launcher,
+ * e.g. a script starting the worker on another machine of a shared file system. Every worker has its own heap
+ * and the store lives off-heap in a memory-mapped file, so the book may be far larger than the memory of one JVM.
+ *
+ * A worker that fails or exceeds the timeout is started again, up to the given number of attempts.
+ * The results of a finished unit are merged into the store, the store is flushed and then the unit is appended to
+ * merged.txt, the checkpoint of the job. A coordinator started again with the same work directory continues with
+ * the units not merged yet and merges the results of workers that finished after it stopped.
+ * A position reached in several units is stored once, the results are identical by the deterministic search.
+ *
+ * Usage: BookCoordinator work-directory store [--plies n] [--split s] [--prefixes-per-unit k] [--workers w]
+ * [--depth d] [--seed s] [--attempts a] [--timeout-seconds t] [--worker-heap size] [--launcher command]
+ */
+public class BookCoordinator {
+	private static final String MERGED_FILE = "merged.txt";
+	private static final int STORE_INITIAL_BITS = 20;
+	private static final long POLL_MILLIS = 100;
+
+	private final Path workDirectory;
+	private final Path storeFile;
+	private final int plies;
+	private final int split;
+	private final int prefixesPerUnit;
+	private final int workers;
+	private final int depth;
+	private final long seed;
+	private final int attempts;
+	private final long timeoutMillis;
+	private final String workerHeap;
+	private final String launcher;
+
+	/**
+	 * A running worker process
+	 */
+	private static class RunningUnit {
+		final BookUnit unit;
+		final Process process;
+		final long startMillis;
+
+		RunningUnit(BookUnit unit, Process process) {
+			this.unit = unit;
+			this.process = process;
+			this.startMillis = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @param workDirectory The directory of the units, results and checkpoint
+	 * @param storeFile The store the results are merged into
+	 * @param plies The book holds the positions up to this ply
+	 * @param split The positions are partitioned by the lines of this many plies
+	 * @param prefixesPerUnit Number of lines of a unit
+	 * @param workers Number of worker processes running at once
+	 * @param depth Depth of the search
+	 * @param seed The seed of the choice among equally scored moves
+	 * @param attempts How often a unit is started before the job gives up on it
+	 * @param timeoutMillis A worker running longer is stopped and counts as failed
+	 * @param workerHeap Maximum heap of a worker, e.g. 512m
+	 * @param launcher Command starting a worker in place of the java command of this JVM, split at spaces, or null
+	 */
+	public BookCoordinator(Path workDirectory, Path storeFile, int plies, int split, int prefixesPerUnit, int workers, int depth,
+			long seed, int attempts, long timeoutMillis, String workerHeap, String launcher) {
+		if(split < 1 || split > plies || prefixesPerUnit < 1 || workers < 1 || attempts < 1)
+			throw new IllegalArgumentException();
+		this.workDirectory = workDirectory;
+		this.storeFile = storeFile;
+		this.plies = plies;
+		this.split = split;
+		this.prefixesPerUnit = prefixesPerUnit;
+		this.workers = workers;
+		this.depth = depth;
+		this.seed = seed;
+		this.attempts = attempts;
+		this.timeoutMillis = timeoutMillis;
+		this.workerHeap = workerHeap;
+		this.launcher = launcher;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.err.println("Usage: BookCoordinator work-directory store [--plies n] [--split s] [--prefixes-per-unit k] [--workers w]"
+					+ " [--depth d] [--seed s] [--attempts a] [--timeout-seconds t] [--worker-heap size] [--launcher command]");
+			System.exit(1);
+		}
+		int plies = 6;
+		int split = 2;
+		int prefixesPerUnit = 32;
+		int workers = Runtime.getRuntime().availableProcessors();
+		int depth = 4;
+		long seed = 1;
+		int attempts = 3;
+		long timeoutSeconds = 3600;
+		String workerHeap = "512m";
+		String launcher = null;
+		for(int i = 2; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--plies":
+					plies = Integer.parseInt(args[i + 1]);
+					break;
+				case "--split":
+					split = Integer.parseInt(args[i + 1]);
+					break;
+				case "--prefixes-per-unit":
+					prefixesPerUnit = Integer.parseInt(args[i + 1]);
+					break;
+				case "--workers":
+					workers = Integer.parseInt(args[i + 1]);
+					break;
+				case "--depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--attempts":
+					attempts = Integer.parseInt(args[i + 1]);
+					break;
+				case "--timeout-seconds":
+					timeoutSeconds = Long.parseLong(args[i + 1]);
+					break;
+				case "--worker-heap":
+					workerHeap = args[i + 1];
+					break;
+				case "--launcher":
+					launcher = args[i + 1];
+					break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+		BookCoordinator coordinator = new BookCoordinator(Paths.get(args[0]), Paths.get(args[1]), plies, split, prefixesPerUnit,
+				workers, depth, seed, attempts, timeoutSeconds * 1000, workerHeap, launcher);
+		if(!coordinator.run()) {
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Runs the job, continuing an interrupted run of the same work directory
+	 * @return Were all units merged? False if a unit failed in all attempts.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean run() throws IOException, InterruptedException {
+		Files.createDirectories(workDirectory);
+		List<BookUnit> units = loadOrCreateUnits();
+		Set<Integer> merged = readMerged();
+		Queue<BookUnit> pending = new ArrayDeque<>();
+		Map<Integer, Integer> tries = new HashMap<>();
+		List<Integer> failed = new ArrayList<>();
+		List<RunningUnit> running = new ArrayList<>();
+		long start = System.nanoTime();
+		//a coordinator killed while workers run takes them along, otherwise they would write results after a restart
+		Thread killWorkers = new Thread(() -> ProcessHandle.current().children().forEach(ProcessHandle::destroyForcibly));
+		Runtime.getRuntime().addShutdownHook(killWorkers);
+
+		try(PositionStore store = PositionStore.open(storeFile, STORE_INITIAL_BITS);
+				FileChannel checkpoint = FileChannel.open(workDirectory.resolve(MERGED_FILE),
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			for(BookUnit unit : units) {
+				if(merged.contains(unit.getId())) {
+					continue;
+				}
+				//the worker finished, but the coordinator stopped before merging
+				if(Files.exists(BookUnit.resultFile(workDirectory, unit.getId()))) {
+					merge(unit, store, checkpoint);
+				}
+				else {
+					pending.add(unit);
+				}
+			}
+			System.err.printf("%d units, %d merged before, %d to do%n", units.size(), merged.size(), pending.size());
+
+			while(!pending.isEmpty() || !running.isEmpty()) {
+				while(running.size() < workers && !pending.isEmpty()) {
+					BookUnit unit = pending.poll();
+					tries.merge(unit.getId(), 1, Integer::sum);
+					running.add(new RunningUnit(unit, launch(unit)));
+				}
+				Thread.sleep(POLL_MILLIS);
+				for(Iterator<RunningUnit> it = running.iterator(); it.hasNext(); ) {
+					RunningUnit r = it.next();
+					int id = r.unit.getId();
+					if(r.process.isAlive()) {
+						if(System.currentTimeMillis() - r.startMillis > timeoutMillis) {
+							System.err.println("Unit " + id + " timed out");
+							r.process.destroyForcibly().waitFor();
+						}
+						else {
+							continue;
+						}
+					}
+					it.remove();
+					if(r.process.exitValue() == 0 && Files.exists(BookUnit.resultFile(workDirectory, id))) {
+						merge(r.unit, store, checkpoint);
+					}
+					else if(tries.get(id) < attempts) {
+						System.err.println("Unit " + id + " failed (exit " + r.process.exitValue() + "), starting it again");
+						pending.add(r.unit);
+					}
+					else {
+						System.err.println("Unit " + id + " failed " + attempts + " times, see " + logFile(id));
+						failed.add(id);
+					}
+				}
+			}
+			System.err.printf("%d positions in the store, %.1f s%n", store.size(), (System.nanoTime() - start) / 1e9);
+		}
+		finally {
+			for(RunningUnit r : running) {
+				r.process.destroyForcibly();
+			}
+			Runtime.getRuntime().removeShutdownHook(killWorkers);
+		}
+		if(!failed.isEmpty()) {
+			System.err.println("Failed units: " + failed + ", start the job again to retry them");
+		}
+		return failed.isEmpty();
+	}
+
+	/**
+	 * Reads the units of the work directory or partitions the job if it is new.
+	 * The first line of units.txt describes the job, a directory of another job is refused.
+	 */
+	private List<BookUnit> loadOrCreateUnits() throws IOException {
+		Path file = workDirectory.resolve(BookUnit.UNITS_FILE);
+		String description = "# plies " + plies + " split " + split + " depth " + depth + " seed " + seed;
+		List<BookUnit> units = new ArrayList<>();
+		if(Files.exists(file)) {
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			if(lines.isEmpty() || !lines.get(0).equals(description)) {
+				throw new IOException(workDirectory + " belongs to another job: " + (lines.isEmpty() ? "" : lines.get(0)));
+			}
+			for(String line : lines.subList(1, lines.size())) {
+				units.add(BookUnit.parse(line));
+			}
+			return units;
+		}
+		//the positions before the split ply
+		List<int[]> start = new ArrayList<>();
+		start.add(new int[0]);
+		units.add(new BookUnit(0, split - 1, start));
+		List<int[]> prefixes = new ArrayList<>();
+		Game game = new Game(1, 'W', 'B');
+		collectPrefixes(game, game.getHumanPlayer(), new int[split], 0, prefixes);
+		for(int i = 0; i < prefixes.size(); i += prefixesPerUnit) {
+			units.add(new BookUnit(units.size(), plies, new ArrayList<>(prefixes.subList(i, Math.min(i + prefixesPerUnit, prefixes.size())))));
+		}
+		StringBuilder sb = new StringBuilder(description).append('\n');
+		for(BookUnit unit : units) {
+			sb.append(unit.format()).append('\n');
+		}
+		//written under another name and renamed, so a crash never leaves a partial partition
+		Path tmp = workDirectory.resolve(BookUnit.UNITS_FILE + ".tmp");
+		Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+		return units;
+	}
+
+	/**
+	 * Collects all lines of split plies, lines ending the game early are left out
+	 */
+	private void collectPrefixes(Game game, Player player, int[] line, int ply, List<int[]> prefixes) {
+		if(ply == line.length) {
+			prefixes.add(line.clone());
+			return;
+		}
+		if(game.hasLost(player)) {
+			return;
+		}
+		for(Move move : game.generatePossibleMoves(player)) {
+			line[ply] = move.toCode();
+			game.applyMoveCode(line[ply], player);
+			collectPrefixes(game, game.getOtherPlayer(player), line, ply + 1, prefixes);
+			game.undoMoveCode(line[ply], player);
+		}
+	}
+
+	private Set<Integer> readMerged() throws IOException {
+		Set<Integer> merged = new HashSet<>();
+		Path file = workDirectory.resolve(MERGED_FILE);
+		if(Files.exists(file)) {
+			for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				//a line cut off by a crash is incomplete, its unit is merged again
+				if(line.endsWith(";")) {
+					merged.add(Integer.parseInt(line.substring(0, line.length() - 1)));
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Starts the worker process of a unit, its output goes to unit-id.log
+	 */
+	private Process launch(BookUnit unit) throws IOException {
+		List<String> command = new ArrayList<>();
+		if(launcher != null) {
+			for(String part : launcher.trim().split("\\s+")) {
+				command.add(part);
+			}
+		}
+		else {
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.add("-Xmx" + workerHeap);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+		}
+		command.add(BookWorker.class.getName());
+		command.add(workDirectory.toString());
+		command.add(Integer.toString(unit.getId()));
+		command.add("--depth");
+		command.add(Integer.toString(depth));
+		command.add("--seed");
+		command.add(Long.toString(seed));
+		Files.deleteIfExists(BookUnit.resultFile(workDirectory, unit.getId()));
+		return new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(logFile(unit.getId()).toFile())
+				.start();
+	}
+
+	private Path logFile(int id) {
+		return workDirectory.resolve("unit-" + id + ".log");
+	}
+
+	/**
+	 * Merges the results of a unit into the store and records it in the checkpoint once the store is flushed
+	 */
+	private void merge(BookUnit unit, PositionStore store, FileChannel checkpoint) throws IOException {
+		Path resultFile = BookUnit.resultFile(workDirectory, unit.getId());
+		long positions = 0;
+		try(InputStream stream = new BufferedInputStream(Files.newInputStream(resultFile), 1 << 16)) {
+			DataInputStream in = new DataInputStream(stream);
+			while(true) {
+				long key;
+				try {
+					key = in.readLong();
+				}
+				catch(EOFException x) {
+					break;
+				}
+				int score = in.readInt();
+				int moveCode = in.readInt();
+				store.put(key, score, moveCode, depth);
+				positions++;
+			}
+		}
+		store.flush();
+		checkpoint.write(ByteBuffer.wrap((unit.getId() + ";\n").getBytes(StandardCharsets.US_ASCII)));
+		checkpoint.force(false);
+		Files.delete(resultFile);
+		System.err.printf("Unit %d merged: %d positions%n", unit.getId(), positions);
+	}
+}
@@ -0,0 +1,236 @@
+package game.analysis;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import game.*;
+import game.board.*;
+import game.players.*;
+import game.record.*;
+
+/**
+ * Worker process of the opening book generation, started by the BookCoordinator for one work unit.
+ *
+ * A unit consists of lines of the opening (prefixes) and a maximum ply. The worker searches every position
+ * reached from the prefixes up to the maximum ply, each position once, and writes the results into the file
+ * unit-id.res of the work directory: records of 16 bytes (big-endian) with the position key (long),
+ * the score for the side to move (int) and the code of the best move (int).
+ * The file is written under another name and renamed when complete, so it exists only if the unit succeeded.
+ * The search runs in the deterministic mode of the AIPlayer, so a retried unit gives the same results.
+ *
+ * Usage: BookWorker work-directory unit-id [--depth d] [--table-bits b] [--seed s]
+ */
+public class BookWorker {
+	private final AIPlayer engine;
+	/**
+	 * The lowest ply every visited position was reached at
+	 */
+	private final Map<Long, Integer> visited = new HashMap<>();
+	private DataOutputStream out;
+	private long positions;
+
+	/**
+	 * @param depth Depth of the search
+	 * @param tableBits The transposition table holds 2^tableBits positions
+	 * @param seed The seed of the choice among equally scored moves
+	 */
+	public BookWorker(int depth, int tableBits, long seed) {
+		engine = new AIPlayer('A', depth);
+		engine.enableTranspositionTable(tableBits);
+		engine.enableDeterministicMode(seed);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: BookWorker work-directory unit-id [--depth d] [--table-bits b] [--seed s]");
+			System.exit(1);
+		}
+		int depth = 4;
+		int tableBits = 20;
+		long seed = 1;
+		for(int i = 2; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "--table-bits":
+					tableBits = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+		Path workDirectory = Paths.get(args[0]);
+		int id = Integer.parseInt(args[1]);
+		BookUnit unit = BookUnit.read(workDirectory, id);
+		long start = System.nanoTime();
+		long positions = new BookWorker(depth, tableBits, seed).run(unit, BookUnit.resultFile(workDirectory, id));
+		System.err.printf("Unit %d: %d positions in %.1f s%n", id, positions, (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Searches all positions of a unit
+	 * @param unit The unit
+	 * @param resultFile The file of the results
+	 * @return The number of positions searched
+	 * @throws IOException
+	 */
+	public long run(BookUnit unit, Path resultFile) throws IOException {
+		Path tmp = Paths.get(resultFile.toString() + ".tmp");
+		try(OutputStream stream = Files.newOutputStream(tmp)) {
+			out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+			for(int[] prefix : unit.getPrefixes()) {
+				Game game = new Game(1, 'W', 'B');
+				//the human player moves first, so it represents white
+				Player player = game.getHumanPlayer();
+				for(int code : prefix) {
+					game.applyMoveCode(code, player);
+					player = game.getOtherPlayer(player);
+				}
+				visit(game, player, prefix.length, unit.getMaxPly());
+			}
+			out.flush();
+		}
+		Files.move(tmp, resultFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return positions;
+	}
+
+	private void visit(Game game, Player player, int ply, int maxPly) throws IOException {
+		long key = game.getPositionKey(player);
+		//a position reached again by another move order has the same subtree, unless it is reached earlier now
+		Integer firstPly = visited.putIfAbsent(key, ply);
+		if(firstPly != null && firstPly <= ply || game.hasLost(player)) {
+			return;
+		}
+		if(firstPly == null) {
+			SearchResult result = engine.search(game, player);
+			out.writeLong(key);
+			out.writeInt(result.getScore());
+			out.writeInt(result.getMove().toCode());
+			positions++;
+		}
+		else {
+			visited.put(key, ply);
+		}
+		if(ply == maxPly) {
+			return;
+		}
+		List<Move> moves = game.generatePossibleMoves(player);
+		Player opponent = game.getOtherPlayer(player);
+		for(Move move : moves) {
+			int code = move.toCode();
+			game.applyMoveCode(code, player);
+			visit(game, opponent, ply + 1, maxPly);
+			game.undoMoveCode(code, player);
+		}
+	}
+
+	/**
+	 * A work unit: lines of the opening and the maximum ply up to which their positions are searched.
+	 * The units of a job are kept in the file units.txt of the work directory, one line per unit:
+	 * id, maximum ply and the prefixes separated by tabs, the moves of a prefix in record notation separated by spaces
+	 * (an empty prefix stands for the start position). The first line describes the job.
+	 */
+	public static class BookUnit {
+		public static final String UNITS_FILE = "units.txt";
+
+		private final int id;
+		private final int maxPly;
+		private final List<int[]> prefixes;
+
+		public BookUnit(int id, int maxPly, List<int[]> prefixes) {
+			this.id = id;
+			this.maxPly = maxPly;
+			this.prefixes = prefixes;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public int getMaxPly() {
+			return maxPly;
+		}
+
+		public List<int[]> getPrefixes() {
+			return prefixes;
+		}
+
+		/**
+		 * @return The line of the unit in units.txt
+		 */
+		public String format() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(id).append('\t').append(maxPly);
+			for(int[] prefix : prefixes) {
+				sb.append('\t');
+				for(int i = 0; i < prefix.length; i++) {
+					if(i > 0) {
+						sb.append(' ');
+					}
+					sb.append(MoveNotation.format(prefix[i]));
+				}
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Parses a line of units.txt
+		 * @param line The line
+		 * @return The unit
+		 * @throws IllegalArgumentException if the line is malformed
+		 */
+		public static BookUnit parse(String line) throws IllegalArgumentException {
+			String[] fields = line.split("\t", -1);
+			if(fields.length < 3) {
+				throw new IllegalArgumentException("Malformed unit " + line);
+			}
+			List<int[]> prefixes = new ArrayList<>();
+			for(int f = 2; f < fields.length; f++) {
+				String prefix = fields[f].trim();
+				String[] moves = prefix.isEmpty() ? new String[0] : prefix.split(" ");
+				int[] codes = new int[moves.length];
+				for(int i = 0; i < moves.length; i++) {
+					codes[i] = MoveNotation.parseCode(moves[i]);
+				}
+				prefixes.add(codes);
+			}
+			return new BookUnit(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), prefixes);
+		}
+
+		/**
+		 * Reads a unit of a work directory
+		 * @throws IOException if the unit doesn't exist
+		 */
+		public static BookUnit read(Path workDirectory, int id) throws IOException {
+			List<String> lines = Files.readAllLines(workDirectory.resolve(UNITS_FILE), StandardCharsets.UTF_8);
+			String prefix = id + "\t";
+			for(String line : lines) {
+				if(line.startsWith(prefix)) {
+					return parse(line);
+				}
+			}
+			throw new IOException("No unit " + id + " in " + workDirectory);
+		}
+
+		/**
+		 * @return The file of the results of a unit
+		 */
+		public static Path resultFile(Path workDirectory, int id) {
+			return workDirectory.resolve("unit-" + id + ".res");
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package game.analysis;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A persistent map from position keys to analysis results (score, best move and depth) for far more positions
+ * than fit on the heap. The entries live off-heap in a memory-mapped file, so a restarted job continues with
+ * the stored results immediately without loading them.
+ *
+ * The file is an open addressing hash table with linear probing and fixed records of 16 bytes: the key and the packed result.
+ * Writers claim an empty slot by a compare-and-set of its key, so they need no locks among each other.
+ * When the table gets too full it is doubled by writing a complete new file next to it, which then replaces
+ * the old one by an atomic rename. Therefore a crash leaves either the old or the new table, never a partial one.
+ * A store that wasn't closed properly is detected by the header and its entries are counted again on opening.
+ *
+ * File layout (little-endian): a header of 64 bytes with the magic "NMMSTORE", the version (int),
+ * the log2 of the capacity (int), the number of entries (long) and the clean flag (int), followed by the records.
+ */
+public class PositionStore implements Closeable {
+	private static final long MAGIC = 0x45524F54534D4D4EL;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE = 16;
+	/**
+	 * Records per mapped segment, a single mapping can't exceed 2 GB
+	 */
+	private static final int SEGMENT_BITS = 26;
+	/**
+	 * Set in every stored key, so an empty slot (0) never matches a key
+	 */
+	private static final long OCCUPIED = 1L << 63;
+	/**
+	 * Set in every written result, a slot whose key is claimed but whose result isn't written yet has none
+	 */
+	private static final long VALID = 1L << 63;
+	private static final int NO_MOVE = 0x7FFF;
+	private static final double MAX_LOAD = 0.75;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final Path file;
+	private final Path growFile;
+	private final StampedLock lock = new StampedLock();
+	private final AtomicLong size = new AtomicLong();
+	//replaced on growth, guarded by lock
+	private FileChannel channel;
+	private MappedByteBuffer header;
+	private MappedByteBuffer[] segments;
+	private int capacityBits;
+	private long mask;
+	private long threshold;
+
+	private PositionStore(Path file) {
+		this.file = file;
+		this.growFile = Paths.get(file.toString() + ".grow");
+	}
+
+	/**
+	 * Opens a store or creates it if the file doesn't exist
+	 * @param file The file of the store
+	 * @param initialCapacityBits A new store holds 2^initialCapacityBits records before it grows
+	 * @return The opened store
+	 * @throws IOException if the file can't be opened or isn't a store
+	 */
+	public static PositionStore open(Path file, int initialCapacityBits) throws IOException {
+		if(initialCapacityBits < 4 || initialCapacityBits > 40) {
+			throw new IllegalArgumentException("initialCapacityBits out of range");
+		}
+		PositionStore store = new PositionStore(file);
+		//a growth interrupted by a crash left an incomplete table, the old one is still intact
+		Files.deleteIfExists(store.growFile);
+		if(Files.exists(file)) {
+			store.map(file, -1);
+		}
+		else {
+			//created under another name and renamed, so a crash never leaves a store without header
+			Path tmp = Paths.get(file.toString() + ".new");
+			PositionStore created = new PositionStore(tmp);
+			created.map(tmp, initialCapacityBits);
+			created.close();
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+			store.map(file, -1);
+		}
+		return store;
+	}
+
+	/**
+	 * Looks up a position
+	 * @param key The position key, see Game.getPositionKey
+	 * @return The packed result, to be decoded by score, move and depth, or -1 if the position isn't stored
+	 */
+	public long get(long key) {
+		long stamp = lock.readLock();
+		try {
+			long stored = key | OCCUPIED;
+			for(long slot = slot(key); ; slot = slot + 1 & mask) {
+				long current = (long) LONGS.getVolatile(segment(slot), offset(slot));
+				if(current == 0) {
+					return -1;
+				}
+				if(current == stored) {
+					long result = (long) LONGS.getVolatile(segment(slot), offset(slot) + 8);
+					return (result & VALID) != 0 ? result & ~VALID : -1;
+				}
+			}
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Stores the result of a position. A stored result of the same position is only replaced
+	 * if it was searched less deep.
+	 * @param key The position key
+	 * @param score The score for the player in turn
+	 * @param moveCode The code of the best move or -1 if there is none
+	 * @param depth The depth of the search
+	 * @throws IOException if the store had to grow and the new file couldn't be written
+	 */
+	public void put(long key, int score, int moveCode, int depth) throws IOException {
+		long result = VALID | (long) (depth & 0xFF) << 48 | (long) (moveCode < 0 ? NO_MOVE : moveCode & NO_MOVE) << 32
+				| (score & 0xFFFFFFFFL);
+		boolean inserted = false;
+		long stamp = lock.readLock();
+		try {
+			long stored = key | OCCUPIED;
+			for(long slot = slot(key); ; slot = slot + 1 & mask) {
+				ByteBuffer segment = segment(slot);
+				int offset = offset(slot);
+				long current = (long) LONGS.getVolatile(segment, offset);
+				if(current == 0 && LONGS.compareAndSet(segment, offset, 0L, stored)) {
+					inserted = true;
+					current = stored;
+				}
+				else if(current == 0) {
+					//another writer claimed the slot in the meantime, maybe for the same key
+					current = (long) LONGS.getVolatile(segment, offset);
+				}
+				if(current == stored) {
+					//a writer of the same key may come first even to a just claimed slot, so the result is always set by compare-and-set
+					long old;
+					do {
+						old = (long) LONGS.getVolatile(segment, offset + 8);
+						if((old & VALID) != 0 && depth(old & ~VALID) > depth) {
+							break;
+						}
+					} while(!LONGS.compareAndSet(segment, offset + 8, old, result));
+					break;
+				}
+			}
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+		if(inserted && size.incrementAndGet() > threshold) {
+			grow();
+		}
+	}
+
+	public static int score(long result) {
+		return (int) result;
+	}
+
+	/**
+	 * @return The code of the best move or -1 if none was stored
+	 */
+	public static int move(long result) {
+		int move = (int) (result >>> 32) & NO_MOVE;
+		return move == NO_MOVE ? -1 : move;
+	}
+
+	public static int depth(long result) {
+		return (int) (result >>> 48) & 0xFF;
+	}
+
+	/**
+	 * @return The number of stored positions
+	 */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * @return The number of records the table has at the moment
+	 */
+	public long capacity() {
+		return 1L << capacityBits;
+	}
+
+	/**
+	 * Writes all stored results to the disk
+	 */
+	public void flush() {
+		long stamp = lock.writeLock();
+		try {
+			writeHeader(false);
+			for(MappedByteBuffer segment : segments) {
+				segment.force();
+			}
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Writes all results to the disk and marks the store as properly closed
+	 */
+	@Override
+	public void close() throws IOException {
+		long stamp = lock.writeLock();
+		try {
+			if(channel == null) {
+				return;
+			}
+			for(MappedByteBuffer segment : segments) {
+				segment.force();
+			}
+			writeHeader(true);
+			header.force();
+			channel.close();
+			channel = null;
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Maps a store file
+	 * @param path The file
+	 * @param newCapacityBits The capacity of a new file or -1 to open an existing one
+	 */
+	private void map(Path path, int newCapacityBits) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		boolean clean = true;
+		if(newCapacityBits < 0) {
+			if(header.getLong(0) != MAGIC) {
+				channel.close();
+				throw new IOException(path + " is no position store");
+			}
+			if(header.getInt(8) != VERSION) {
+				channel.close();
+				throw new IOException("Unsupported store version " + header.getInt(8));
+			}
+			capacityBits = header.getInt(12);
+			size.set(header.getLong(16));
+			clean = header.getInt(24) != 0;
+		}
+		else {
+			capacityBits = newCapacityBits;
+			size.set(0);
+		}
+		mask = (1L << capacityBits) - 1;
+		threshold = (long) ((1L << capacityBits) * MAX_LOAD);
+		int segmentBits = Math.min(capacityBits, SEGMENT_BITS);
+		segments = new MappedByteBuffer[(int) (1L << capacityBits - segmentBits)];
+		for(int i = 0; i < segments.length; i++) {
+			long position = HEADER_SIZE + ((long) i << segmentBits) * RECORD_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) RECORD_SIZE << segmentBits);
+			segments[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if(!clean) {
+			//the counter wasn't written when the store was left, the records themselves are valid
+			size.set(countRecords());
+		}
+		//the store is marked dirty while it is open, close() marks it clean again
+		writeHeader(false);
+		header.force();
+	}
+
+	private long countRecords() {
+		long count = 0;
+		for(long slot = 0; slot <= mask; slot++) {
+			if((long) LONGS.getVolatile(segment(slot), offset(slot)) != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void writeHeader(boolean clean) {
+		header.putLong(0, MAGIC);
+		header.putInt(8, VERSION);
+		header.putInt(12, capacityBits);
+		header.putLong(16, size.get());
+		header.putInt(24, clean ? 1 : 0);
+	}
+
+	/**
+	 * Doubles the capacity by copying all records into a new file, which replaces the old one when it is complete
+	 */
+	private void grow() throws IOException {
+		long stamp = lock.writeLock();
+		try {
+			if(size.get() <= threshold) {
+				//grown by another writer
+				return;
+			}
+			PositionStore grown = new PositionStore(growFile);
+			grown.map(growFile, capacityBits + 1);
+			for(long slot = 0; slot <= mask; slot++) {
+				long key = (long) LONGS.getVolatile(segment(slot), offset(slot));
+				long result = (long) LONGS.getVolatile(segment(slot), offset(slot) + 8);
+				if(key != 0 && (result & VALID) != 0) {
+					grown.insert(key, result);
+				}
+			}
+			grown.close();
+			channel.close();
+			Files.move(growFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			map(file, -1);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Inserts a record into a table not yet shared with other threads
+	 */
+	private void insert(long storedKey, long result) {
+		for(long slot = slot(storedKey & ~OCCUPIED); ; slot = slot + 1 & mask) {
+			ByteBuffer segment = segment(slot);
+			if(segment.getLong(offset(slot)) == 0) {
+				segment.putLong(offset(slot), storedKey);
+				segment.putLong(offset(slot) + 8, result);
+				size.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	private long slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (h ^ h >>> 31) & mask;
+	}
+
+	private ByteBuffer segment(long slot) {
+		return segments[(int) (slot >>> SEGMENT_BITS)];
+	}
+
+	private int offset(long slot) {
+		return (int) (slot & (1L << SEGMENT_BITS) - 1) * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,60 @@
+package game.analysis;
+
+/**
+ * A bounded, direct-mapped cache from position keys to analysis results shared by all workers 
+ * of the batch analyzer. It deduplicates positions occurring repeatedly in a game record
+ * without growing with the size of the record: a colliding entry simply overwrites the old one.
+ * 
+ * The cache works without locks. Every slot stores the key xor'ed with the data, so an entry
+ * torn by concurrent writes fails the verification on lookup and is treated as a miss.
+ */
+public class ResultCache {
+	/**
+	 * Marks stored data, so that the zeroed slots of a new table never verify
+	 */
+	private static final long VALID = 1L << 63;
+	private final long[] checks;
+	private final long[] data;
+	private final int mask;
+	
+	/**
+	 * @param bits The cache holds 2^bits entries
+	 */
+	public ResultCache(int bits) {
+		if(bits < 1 || bits > 30) 
+			throw new IllegalArgumentException("bits must be in [1, 30]");
+		checks = new long[1 << bits];
+		data = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+	
+	/**
+	 * @param key The position key
+	 * @return The stored data (at most 63 bits) or -1 if the position isn't cached
+	 */
+	public long get(long key) {
+		int slot = slot(key);
+		long d = data[slot];
+		if((d & VALID) != 0 && (checks[slot] ^ d) == key) {
+			return d & ~VALID;
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param key The position key
+	 * @param value The data to store, at most 63 bits
+	 */
+	public void put(long key, long value) {
+		int slot = slot(key);
+		long d = value | VALID;
+		data[slot] = d;
+		checks[slot] = key ^ d;
+	}
+	
+	private int slot(long key) {
+		//mix the bits, the lower bits of a position key alone distribute badly
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+}
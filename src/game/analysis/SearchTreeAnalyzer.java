@@ -0,0 +1,265 @@
+package game.analysis;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import game.players.*;
+import game.record.*;
+
+/**
+ * Reads a dump of search trees written by a SearchTreeWriter and reports how well the moves were ordered:
+ * how many nodes of each kind were visited, at which index the cutoffs happened (ideally always at the first move),
+ * the cutoff rates per remaining depth and the ordering failures, i.e. cutoffs by a later move.
+ * The nodes searched below the moves tried before the move causing the cutoff were wasted; the failures
+ * wasting the most nodes are listed with their search, ply, remaining depth and the move leading to the node.
+ *
+ * The records are written in post-order, so the size of every subtree is known when its root is read
+ * and the file is streamed without keeping the trees in memory.
+ *
+ * Usage: SearchTreeAnalyzer dump [--top n]
+ */
+public class SearchTreeAnalyzer {
+	private static final int MAX_PLY = 256;
+	/**
+	 * Upper bounds (exclusive) of the buckets of the cutoff index histogram
+	 */
+	private static final int[] CUTOFF_BUCKETS = {1, 2, 3, 4, 8, 16, Integer.MAX_VALUE};
+	private static final String[] CUTOFF_BUCKET_NAMES = {"0", "1", "2", "3", "4-7", "8-15", "16+"};
+
+	private final int top;
+	private long searches;
+	private long roots;
+	private long nodes;
+	private long leaves;
+	private long draws;
+	private long tableHits;
+	private long terminals;
+	private long aborted;
+	private long interior;
+	private long cutoffs;
+	private final long[] cutoffHistogram = new long[CUTOFF_BUCKETS.length];
+	private final long[] depthNodes = new long[MAX_PLY];
+	private final long[] depthCutoffs = new long[MAX_PLY];
+	private final long[] depthFirstCutoffs = new long[MAX_PLY];
+	private long failures;
+	private long wastedNodes;
+	private final PriorityQueue<Failure> worst = new PriorityQueue<>(Comparator.comparingLong(f -> f.wasted));
+
+	/**
+	 * The sizes of the subtrees of the children written so far, per ply
+	 */
+	private final long[][] children = new long[MAX_PLY + 1][];
+	private final int[] childCount = new int[MAX_PLY + 1];
+
+	/**
+	 * A cutoff that didn't happen at the first move
+	 */
+	private static class Failure {
+		final long search;
+		final int ply;
+		final int depth;
+		final int move;
+		final int cutoffIndex;
+		final long wasted;
+
+		Failure(long search, int ply, int depth, int move, int cutoffIndex, long wasted) {
+			this.search = search;
+			this.ply = ply;
+			this.depth = depth;
+			this.move = move;
+			this.cutoffIndex = cutoffIndex;
+			this.wasted = wasted;
+		}
+	}
+
+	/**
+	 * @param top Number of ordering failures listed
+	 */
+	public SearchTreeAnalyzer(int top) {
+		this.top = top;
+		for(int i = 0; i < children.length; i++) {
+			children[i] = new long[16];
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: SearchTreeAnalyzer dump [--top n]");
+			System.exit(1);
+		}
+		int top = 20;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--top":
+					top = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+		SearchTreeAnalyzer analyzer = new SearchTreeAnalyzer(top);
+		analyzer.read(Paths.get(args[0]));
+		analyzer.report();
+	}
+
+	/**
+	 * Reads all records of a dump
+	 * @param file The dump
+	 * @throws IOException If the file can't be read or is no dump
+	 */
+	public void read(Path file) throws IOException {
+		try(InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+			DataInputStream data = new DataInputStream(in);
+			byte[] header = new byte[SearchTreeWriter.HEADER_SIZE];
+			data.readFully(header);
+			if(!Arrays.equals(Arrays.copyOf(header, SearchTreeWriter.MAGIC.length), SearchTreeWriter.MAGIC)) {
+				throw new IOException(file + " is no search tree dump");
+			}
+			if(header[SearchTreeWriter.MAGIC.length] != SearchTreeWriter.VERSION) {
+				throw new IOException("Unsupported version " + header[SearchTreeWriter.MAGIC.length]);
+			}
+			byte[] record = new byte[SearchTreeWriter.RECORD_SIZE];
+			ByteBuffer buffer = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+			while(true) {
+				try {
+					data.readFully(record);
+				}
+				catch(EOFException x) {
+					//a truncated last record is ignored
+					break;
+				}
+				add(buffer);
+			}
+		}
+	}
+
+	private void add(ByteBuffer record) {
+		int type = record.get(0);
+		int flags = record.get(1);
+		int ply = record.get(2) & 0xff;
+		int depth = record.get(3) & 0xff;
+		int move = record.getShort(4);
+		int searched = record.getShort(6);
+		int cutoffIndex = record.getShort(8);
+		if(type == SearchTreeWriter.SEARCH) {
+			searches++;
+			Arrays.fill(childCount, 0);
+			return;
+		}
+		if(type == SearchTreeWriter.ROOT) {
+			roots++;
+		}
+		else {
+			nodes++;
+		}
+		//the children of this node are the completed nodes of the next ply, in the order they were searched
+		long size = 1;
+		int next = Math.min(ply + 1, MAX_PLY);
+		for(int i = 0; i < childCount[next]; i++) {
+			size += children[next][i];
+		}
+		if((flags & SearchTreeWriter.CUTOFF) != 0 && cutoffIndex > 0) {
+			long wasted = 0;
+			for(int i = 0; i < Math.min(cutoffIndex, childCount[next]); i++) {
+				wasted += children[next][i];
+			}
+			failures++;
+			wastedNodes += wasted;
+			worst.add(new Failure(searches, ply, depth, move, cutoffIndex, wasted));
+			if(worst.size() > top) {
+				worst.poll();
+			}
+		}
+		childCount[next] = 0;
+		if(type == SearchTreeWriter.NODE) {
+			if(childCount[ply] == children[ply].length) {
+				children[ply] = Arrays.copyOf(children[ply], children[ply].length * 2);
+			}
+			children[ply][childCount[ply]++] = size;
+		}
+
+		if((flags & SearchTreeWriter.ABORTED) != 0) {
+			aborted++;
+		}
+		else if((flags & SearchTreeWriter.DRAW) != 0) {
+			draws++;
+		}
+		else if((flags & SearchTreeWriter.TABLE_HIT) != 0) {
+			tableHits++;
+		}
+		else if((flags & SearchTreeWriter.TERMINAL) != 0) {
+			terminals++;
+		}
+		else if((flags & SearchTreeWriter.LEAF) != 0) {
+			leaves++;
+		}
+		else if(searched > 0) {
+			interior++;
+			depthNodes[depth]++;
+			if((flags & SearchTreeWriter.CUTOFF) != 0) {
+				cutoffs++;
+				depthCutoffs[depth]++;
+				if(cutoffIndex == 0) {
+					depthFirstCutoffs[depth]++;
+				}
+				int bucket = 0;
+				while(cutoffIndex >= CUTOFF_BUCKETS[bucket]) {
+					bucket++;
+				}
+				cutoffHistogram[bucket]++;
+			}
+		}
+	}
+
+	/**
+	 * Prints the report to the standard output
+	 */
+	public void report() {
+		System.out.println("searches " + searches + ", root passes " + roots + ", nodes " + nodes);
+		System.out.printf("interior %d, leaves %d, table hits %d, draws %d, terminal %d, aborted %d%n",
+				interior, leaves, tableHits, draws, terminals, aborted);
+
+		System.out.println();
+		System.out.printf("cutoffs %d (%s of the interior nodes), at the first move %s%n", cutoffs, percent(cutoffs, interior),
+				percent(cutoffHistogram[0], cutoffs));
+		System.out.printf("%-8s %12s %8s%n", "index", "cutoffs", "share");
+		for(int i = 0; i < cutoffHistogram.length; i++) {
+			System.out.printf("%-8s %12d %8s%n", CUTOFF_BUCKET_NAMES[i], cutoffHistogram[i], percent(cutoffHistogram[i], cutoffs));
+		}
+
+		System.out.println();
+		System.out.printf("%-6s %12s %8s %12s%n", "depth", "interior", "cutoffs", "first move");
+		for(int depth = 0; depth < depthNodes.length; depth++) {
+			if(depthNodes[depth] > 0) {
+				System.out.printf("%-6d %12d %8s %12s%n", depth, depthNodes[depth], percent(depthCutoffs[depth], depthNodes[depth]),
+						percent(depthFirstCutoffs[depth], depthCutoffs[depth]));
+			}
+		}
+
+		System.out.println();
+		System.out.printf("ordering failures %d, wasted nodes %d (%s of all nodes)%n", failures, wastedNodes, percent(wastedNodes, nodes));
+		List<Failure> list = new ArrayList<>(worst);
+		list.sort(Comparator.comparingLong((Failure f) -> f.wasted).reversed());
+		System.out.printf("%-8s %4s %6s %-12s %6s %12s%n", "search", "ply", "depth", "move", "index", "wasted");
+		for(Failure f : list) {
+			System.out.printf("%-8d %4d %6d %-12s %6d %12d%n", f.search, f.ply, f.depth,
+					f.move < 0 ? "root" : MoveNotation.format(f.move), f.cutoffIndex, f.wasted);
+		}
+	}
+
+	private static String percent(long part, long whole) {
+		return whole == 0 ? "-" : String.format("%.1f%%", 100.0 * part / whole);
+	}
+}
@@ -0,0 +1,78 @@
+package game.bench;
+import game.*;
+import game.board.*;
+import game.players.*;
+
+/**
+ * Lets the Alpha Beta search of the AIPlayer play against the Monte Carlo Tree Search of the MCTSPlayer
+ * and reports the results together with the thinking time per game phase of both engines.
+ * The engines alternate in starting the games.
+ *
+ * Usage: EngineArena [games] [alpha beta depth] [mcts millis per move] [mcts threads]
+ */
+public class EngineArena {
+	private static final int MAX_PLIES = 200;
+	private static final int POOL_CAPACITY = 1 << 21;
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		long millis = args.length > 2 ? Long.parseLong(args[2]) : 200;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		//[engine][phase] with engine 0 being Alpha Beta and 1 MCTS
+		long[][] nanos = new long[2][GamePhase.values().length];
+		long[][] moves = new long[2][GamePhase.values().length];
+		int alphaBetaWins = 0, mctsWins = 0, draws = 0;
+
+		for(int g = 0; g < games; g++) {
+			AIPlayer alphaBeta = new AIPlayer('A', depth);
+			MCTSPlayer mcts = new MCTSPlayer('M', millis, threads, POOL_CAPACITY);
+			//the engine in the place of the human player moves first
+			Game game = g % 2 == 0 ? new Game(alphaBeta, mcts) : new Game(mcts, alphaBeta);
+			Player current = game.getHumanPlayer();
+			int plies = 0;
+			while(!game.hasLost(current) && !game.isDraw() && plies < MAX_PLIES) {
+				int engine = current == mcts ? 1 : 0;
+				int phase = current.getGamePhase().ordinal();
+				long start = System.nanoTime();
+				Move move = ((AIPlayer) current).search(game, current).getMove();
+				nanos[engine][phase] += System.nanoTime() - start;
+				moves[engine][phase]++;
+				game.applyMove(move, current);
+				current = game.getOtherPlayer(current);
+				plies++;
+			}
+			mcts.shutdown();
+
+			String outcome;
+			if(!game.hasLost(current)) {
+				draws++;
+				outcome = "draw";
+			}
+			else if(current == mcts) {
+				alphaBetaWins++;
+				outcome = "Alpha Beta wins";
+			}
+			else {
+				mctsWins++;
+				outcome = "MCTS wins";
+			}
+			System.out.println("Game " + (g + 1) + ": " + outcome + " after " + plies + " plies");
+		}
+
+		System.out.println();
+		System.out.printf("Alpha Beta (depth %d) %d, MCTS (%d ms, %d threads) %d, draws %d%n",
+				depth, alphaBetaWins, millis, threads, mctsWins, draws);
+		String[] names = {"Alpha Beta", "MCTS"};
+		for(int e = 0; e < 2; e++) {
+			for(GamePhase phase : GamePhase.values()) {
+				long n = moves[e][phase.ordinal()];
+				if(n > 0) {
+					System.out.printf("%-10s %-15s %5d moves, %8.2f ms per move%n", names[e], phase, n,
+							nanos[e][phase.ordinal()] / 1e6 / n);
+				}
+			}
+		}
+	}
+}
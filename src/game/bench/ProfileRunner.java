@@ -0,0 +1,331 @@
+package game.bench;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import game.*;
+import game.board.*;
+import game.players.*;
+import game.record.*;
+
+/**
+ * Profiles the search under the load of real games with the flight recorder, headless for build agents.
+ *
+ * A fixed set of games is played, every move searched by the AIPlayer configured like in the game of Main
+ * with seeded tie-breaking: either self-play games starting with a few random moves of a fixed seed,
+ * or the games of a record, whose positions are searched while the recorded moves are played.
+ * One game is played as warm-up and left out of the results, so the measured code is compiled by the JIT.
+ *
+ * Written to the output directory: the recording (profile.jfr) with the search events of the AIPlayer,
+ * the execution samples as folded stacks (stacks.folded, the input of flame graph tools like flamegraph.pl)
+ * and a summary (summary.txt, also printed) with the search time, nodes and nodes per second per game phase,
+ * the use of the transposition table, the allocation rate and the share of the hot methods in the samples.
+ *
+ * Usage: ProfileRunner output-directory [--games n] [--depth d] [--seed s] [--record file]
+ */
+public class ProfileRunner {
+	private static final int RANDOM_PLIES = 4;
+	private static final int MAX_PLIES = 150;
+	private static final int SAMPLE_MILLIS = 5;
+	private static final int TOP_FRAMES = 15;
+	/**
+	 * Methods whose share of the samples including their callees is reported
+	 */
+	private static final String[] HOT_METHODS = {
+		"game.players.AIPlayer.alphaBeta",
+		"game.players.MovePicker.next",
+		"game.Game.generatePossibleMoves",
+		"game.Game.checkIfMill",
+		"game.Game.hasLost",
+		"game.players.AIPlayer.evaluate",
+		"game.players.AIPlayer.findDoubleMills",
+		"game.board.MoveGenerator.mobility",
+		"game.Game.applyMoveCode",
+		"game.Game.undoMoveCode"
+	};
+
+	private final int depth;
+	private final long seed;
+	private final Path recordFile;
+	//measured in the workload, the rest is read from the recording
+	private long searches;
+	private long allocatedBytes;
+	private long workloadNanos;
+
+	public ProfileRunner(int depth, long seed, Path recordFile) {
+		this.depth = depth;
+		this.seed = seed;
+		this.recordFile = recordFile;
+	}
+
+	public static void main(String[] args) throws IOException, ParseException {
+		if(args.length < 1) {
+			System.err.println("Usage: ProfileRunner output-directory [--games n] [--depth d] [--seed s] [--record file]");
+			System.exit(1);
+		}
+		int games = 10;
+		int depth = 5;
+		long seed = 1;
+		Path recordFile = null;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+				case "--games":
+					games = Integer.parseInt(args[i + 1]);
+					break;
+				case "--depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seed":
+					seed = Long.parseLong(args[i + 1]);
+					break;
+				case "--record":
+					recordFile = Paths.get(args[i + 1]);
+					break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+		Path directory = Paths.get(args[0]);
+		Files.createDirectories(directory);
+		String summary = new ProfileRunner(depth, seed, recordFile).run(games, directory);
+		System.out.print(summary);
+	}
+
+	/**
+	 * Plays the games with the recording on and writes the results
+	 * @param games Number of games to play
+	 * @param directory The output directory
+	 * @return The summary
+	 */
+	public String run(int games, Path directory) throws IOException, ParseException {
+		Path jfrFile = directory.resolve("profile.jfr");
+		Recording recording = new Recording(Configuration.getConfiguration("profile"));
+		recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(SAMPLE_MILLIS));
+		recording.start();
+		//the warm-up is recorded as well, since the recorder instruments the events on their first use, 
+		//but it is left out of the summary
+		playGames(1, new Random(~seed));
+
+		searches = 0;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		Instant workloadStart = Instant.now();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		playGames(games, new Random(seed));
+		workloadNanos = System.nanoTime() - start;
+		allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		recording.stop();
+		recording.dump(jfrFile);
+		recording.close();
+
+		String summary = analyze(jfrFile, directory.resolve("stacks.folded"), Thread.currentThread().getName(), workloadStart);
+		Files.write(directory.resolve("summary.txt"), summary.getBytes(StandardCharsets.UTF_8));
+		return summary;
+	}
+
+	/**
+	 * Plays self-play games or the games of the record and searches every position
+	 */
+	private void playGames(int games, Random random) throws IOException {
+		if(recordFile == null) {
+			for(int g = 0; g < games; g++) {
+				Game game = createGame();
+				Player current = game.getHumanPlayer();
+				for(int plies = 0; plies < MAX_PLIES && !game.hasLost(current) && !game.isDraw(); plies++) {
+					Move move;
+					if(plies < RANDOM_PLIES) {
+						List<Move> moves = game.generatePossibleMoves(current);
+						move = moves.get(random.nextInt(moves.size()));
+					}
+					else {
+						move = search(game, current).getMove();
+					}
+					game.applyMoveCode(move.toCode(), current);
+					current = game.getOtherPlayer(current);
+				}
+			}
+			return;
+		}
+		try(GameRecordSource reader = GameRecordSource.open(recordFile)) {
+			int[] moves;
+			for(int g = 0; g < games && (moves = reader.nextGame()) != null; g++) {
+				Game game = createGame();
+				//the human player moves first, so it represents white in the record
+				Player current = game.getHumanPlayer();
+				for(int code : moves) {
+					if(game.hasLost(current) || game.validateMove(code, current) != MoveError.NONE) {
+						break;
+					}
+					search(game, current);
+					game.applyMoveCode(code, current);
+					current = game.getOtherPlayer(current);
+				}
+			}
+		}
+	}
+
+	private Game createGame() {
+		Game game = new Game(depth, 'W', 'B');
+		AIPlayer engine = game.getAIPlayer();
+		engine.enableTranspositionTable(20);
+		engine.enableEvalCache(18);
+		//configured like the levels of Main
+		if(depth >= 5) {
+			engine.enableSolver(20, 200000, 1000);
+		}
+		//a seeded choice among equal moves makes the games the same in every run
+		engine.setRandomGenerator(new SplittableRandom(seed));
+		return game;
+	}
+
+	private SearchResult search(Game game, Player player) {
+		searches++;
+		return game.getAIPlayer().search(game, player);
+	}
+
+	/**
+	 * Reads the recording, writes the folded stacks and builds the summary
+	 * @param jfrFile The recording
+	 * @param foldedFile The file of the folded stacks
+	 * @param threadName Only samples of this thread (the workload) are taken into account
+	 * @param workloadStart Events before are part of the warm-up
+	 * @return The summary
+	 */
+	private String analyze(Path jfrFile, Path foldedFile, String threadName, Instant workloadStart) throws IOException {
+		Map<String, long[]> phases = new TreeMap<>(); //searches, nanos, nodes
+		long probes = 0, hits = 0, iterations = 0, samples = 0;
+		Map<String, Long> folded = new HashMap<>();
+		Map<String, Long> selfSamples = new HashMap<>();
+		long[] hotSamples = new long[HOT_METHODS.length];
+		Map<String, Long> allocationSites = new HashMap<>();
+
+		try(RecordingFile file = new RecordingFile(jfrFile)) {
+			while(file.hasMoreEvents()) {
+				RecordedEvent event = file.readEvent();
+				if(event.getStartTime().isBefore(workloadStart)) {
+					continue;
+				}
+				switch(event.getEventType().getName()) {
+					case "game.Search":
+						long[] phase = phases.computeIfAbsent(event.getString("phase"), p -> new long[3]);
+						phase[0]++;
+						phase[1] += event.getDuration().toNanos();
+						phase[2] += event.getLong("nodes");
+						break;
+					case "game.Iteration":
+						iterations++;
+						break;
+					case "game.TranspositionTable":
+						probes += event.getLong("probes");
+						hits += event.getLong("hits");
+						break;
+					case "jdk.ExecutionSample":
+						RecordedThread thread = event.getThread("sampledThread");
+						RecordedStackTrace stack = event.getStackTrace();
+						if(thread == null || !threadName.equals(thread.getJavaName()) || stack == null) {
+							break;
+						}
+						samples++;
+						List<RecordedFrame> frames = stack.getFrames();
+						StringBuilder line = new StringBuilder();
+						Set<String> methods = new HashSet<>();
+						//the top frame comes first, flame graphs start with the root
+						for(int i = frames.size() - 1; i >= 0; i--) {
+							String method = methodName(frames.get(i));
+							methods.add(method);
+							line.append(method).append(i > 0 ? ";" : "");
+						}
+						folded.merge(line.toString(), 1L, Long::sum);
+						if(!frames.isEmpty()) {
+							selfSamples.merge(methodName(frames.get(0)), 1L, Long::sum);
+						}
+						for(int i = 0; i < HOT_METHODS.length; i++) {
+							if(methods.contains(HOT_METHODS[i])) {
+								hotSamples[i]++;
+							}
+						}
+						break;
+					case "jdk.ObjectAllocationSample":
+						RecordedStackTrace allocationStack = event.getStackTrace();
+						String site = allocationStack == null || allocationStack.getFrames().isEmpty() ? "unknown"
+								: methodName(allocationStack.getFrames().get(0));
+						allocationSites.merge(event.getClass("objectClass").getName() + " in " + site, event.getLong("weight"), Long::sum);
+						break;
+					default:
+				}
+			}
+		}
+
+		List<String> lines = new ArrayList<>();
+		folded.entrySet().stream().sorted(Map.Entry.comparingByKey())
+			.forEach(e -> lines.add(e.getKey() + " " + e.getValue()));
+		Files.write(foldedFile, lines, StandardCharsets.UTF_8);
+
+		StringWriter text = new StringWriter();
+		PrintWriter out = new PrintWriter(text);
+		double seconds = workloadNanos / 1e9;
+		out.printf("%d searches (%d iterations) in %.1f s, depth %d, seed %d%n", searches, iterations, seconds, depth, seed);
+		out.printf("%n%-16s %9s %12s %7s %14s %12s%n", "phase", "searches", "time ms", "share", "nodes", "nodes/s");
+		long totalNanos = 0, totalNodes = 0;
+		for(long[] phase : phases.values()) {
+			totalNanos += phase[1];
+			totalNodes += phase[2];
+		}
+		for(Map.Entry<String, long[]> e : phases.entrySet()) {
+			long[] phase = e.getValue();
+			out.printf("%-16s %9d %12.1f %6.1f%% %14d %12.0f%n", e.getKey(), phase[0], phase[1] / 1e6,
+					100.0 * phase[1] / Math.max(totalNanos, 1), phase[2], phase[2] / Math.max(phase[1] / 1e9, 1e-9));
+		}
+		out.printf("%-16s %9s %12.1f %7s %14d %12.0f%n", "total", "", totalNanos / 1e6, "", totalNodes,
+				totalNodes / Math.max(totalNanos / 1e9, 1e-9));
+		out.printf("%ntransposition table: %d probes, %d hits (%.1f%%)%n", probes, hits, 100.0 * hits / Math.max(probes, 1));
+		out.printf("allocation: %.1f MB, %.1f MB/s, %.1f bytes per node%n", allocatedBytes / 1e6, allocatedBytes / 1e6 / seconds,
+				(double) allocatedBytes / Math.max(totalNodes, 1));
+		allocationSites.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed()).limit(5)
+			.forEach(e -> out.printf("  %8.1f MB  %s%n", e.getValue() / 1e6, e.getKey()));
+
+		out.printf("%n%d execution samples every %d ms%n", samples, SAMPLE_MILLIS);
+		out.println("including callees:");
+		for(int i = 0; i < HOT_METHODS.length; i++) {
+			out.printf("  %6.1f%%  %s%n", 100.0 * hotSamples[i] / Math.max(samples, 1), HOT_METHODS[i]);
+		}
+		out.println("self:");
+		final long total = samples;
+		selfSamples.entrySet().stream()
+			.sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+			.limit(TOP_FRAMES)
+			.forEach(e -> out.printf("  %6.1f%%  %s%n", 100.0 * e.getValue() / Math.max(total, 1), e.getKey()));
+		out.flush();
+		return text.toString();
+	}
+
+	private static String methodName(RecordedFrame frame) {
+		return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+	}
+}
@@ -0,0 +1,98 @@
+package game.bench;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import game.*;
+import game.board.*;
+import game.players.*;
+
+/**
+ * Compares the nodes and the time the search configurations of the AIPlayer need for the same positions.
+ * The positions are taken from random games of a fixed seed, so every run uses the same positions,
+ * and the engines search in the deterministic mode, so every run of a build visits the same nodes.
+ *
+ * Usage: SearchBenchmark [positions] [depth] [seed]
+ */
+public class SearchBenchmark {
+
+	/**
+	 * A search configuration to benchmark
+	 */
+	private interface Configuration {
+		AIPlayer create(int depth);
+	}
+
+	public static void main(String[] args) {
+		int numOfPositions = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+		List<Game> games = new ArrayList<>();
+		List<Player> sides = new ArrayList<>();
+		createPositions(numOfPositions, seed, games, sides);
+
+		String[] names = {"plain Alpha Beta", "Alpha Beta + TT", "MTD(f) + TT", "Alpha Beta + TT + EC", "Alpha Beta + TT + batch"};
+		Configuration[] configurations = {
+			d -> new AIPlayer('A', d),
+			d -> {
+				AIPlayer engine = new AIPlayer('A', d);
+				engine.enableTranspositionTable(20);
+				return engine;
+			},
+			d -> {
+				AIPlayer engine = new AIPlayer('A', d);
+				engine.enableTranspositionTable(20);
+				engine.setSearchMode(SearchMode.MTDF);
+				return engine;
+			},
+			d -> {
+				AIPlayer engine = new AIPlayer('A', d);
+				engine.enableTranspositionTable(20);
+				engine.enableEvalCache(18);
+				return engine;
+			},
+			d -> {
+				AIPlayer engine = new AIPlayer('A', d);
+				engine.enableTranspositionTable(20);
+				engine.enableBatchEvaluation(true);
+				return engine;
+			}
+		};
+
+		System.out.printf("%d positions, depth %d%n", games.size(), depth);
+		for(int c = 0; c < configurations.length; c++) {
+			long nodes = 0, nanos = 0;
+			for(int i = 0; i < games.size(); i++) {
+				//a new engine for every position, so no configuration profits from earlier positions
+				AIPlayer engine = configurations[c].create(depth);
+				engine.enableDeterministicMode(seed);
+				long start = System.nanoTime();
+				SearchResult result = engine.search(games.get(i), sides.get(i));
+				nanos += System.nanoTime() - start;
+				nodes += result.getNodes();
+			}
+			System.out.printf("%-24s %12d nodes %10.1f ms %10.0f nodes/s%n", names[c], nodes, nanos / 1e6, nodes / (nanos / 1e9));
+		}
+	}
+
+	/**
+	 * Plays random games and keeps the positions after a random number of plies
+	 */
+	static void createPositions(int numOfPositions, long seed, List<Game> games, List<Player> sides) {
+		Random random = new Random(seed);
+		while(games.size() < numOfPositions) {
+			Game game = new Game(1, 'W', 'B');
+			Player player = game.getHumanPlayer();
+			int plies = 4 + random.nextInt(40);
+			for(int i = 0; i < plies && !game.hasLost(player); i++) {
+				List<Move> moves = game.generatePossibleMoves(player);
+				game.applyMoveCode(moves.get(random.nextInt(moves.size())).toCode(), player);
+				player = game.getOtherPlayer(player);
+			}
+			if(!game.hasLost(player)) {
+				games.add(game);
+				sides.add(player);
+			}
+		}
+	}
+}
@@ -6,6 +6,11 @@ package game.board;
  * @author Lukas
  */
 public class Move implements Comparable<Move> {
+	/**
+	 * Index used in move codes for an absent source or piece to remove
+	 */
+	public static final int NO_POSITION = 31;
+	
 	private final Position source;
 	private final Position destination;
 	private Position pieceToRemove;
@@ -48,6 +53,71 @@ public class Move implements Comparable<Move> {
 		return destination;
 	}
 
+	/**
+	 * Packs the move into an int, the compact representation used by the game records
+	 * and wherever moves have to be stored without allocation.
+	 * Bits 0-4 hold the destination, bits 5-9 the source and bits 10-14 the piece to remove,
+	 * NO_POSITION marks an absent source or piece to remove.
+	 * @return The code of the move
+	 */
+	public int toCode() {
+		return toCode(source == null ? NO_POSITION : source.getIndex(), destination.getIndex(),
+				pieceToRemove == null ? NO_POSITION : pieceToRemove.getIndex());
+	}
+	
+	public static int toCode(int sourceIndex, int destinationIndex, int pieceToRemoveIndex) {
+		return destinationIndex | sourceIndex << 5 | pieceToRemoveIndex << 10;
+	}
+	
+	public static int destinationOf(int code) {
+		return code & 31;
+	}
+	
+	/**
+	 * @return The index of the source or NO_POSITION in the placing pieces phase
+	 */
+	public static int sourceOf(int code) {
+		return (code >>> 5) & 31;
+	}
+	
+	/**
+	 * @return The index of the piece to remove or NO_POSITION if the move doesn't make a mill
+	 */
+	public static int pieceToRemoveOf(int code) {
+		return (code >>> 10) & 31;
+	}
+	
+	/**
+	 * Creates the move object of a move code
+	 * @param code The code of the move
+	 * @param board The board the positions are taken from
+	 * @return The move
+	 */
+	public static Move fromCode(int code, Board board) {
+		int source = sourceOf(code), toRemove = pieceToRemoveOf(code);
+		return new Move(source == NO_POSITION ? null : board.getPos(source), board.getPos(destinationOf(code)), 
+				toRemove == NO_POSITION ? null : board.getPos(toRemove));
+	}
+	
+	/**
+	 * Returns the move in the notation used by the game records:
+	 * "12" places a piece on index 12, "3-4" moves a piece from index 3 to 4
+	 * and a suffix like "x7" removes the opponent's piece on index 7
+	 * @return The move in record notation
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if(source != null) {
+			sb.append(source.getIndex()).append('-');
+		}
+		sb.append(destination.getIndex());
+		if(pieceToRemove != null) {
+			sb.append('x').append(pieceToRemove.getIndex());
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Provides a natural ordering based on the question if the move creates a mill
 	 * Moves are considered lower in value if the create a mill, so that they will be 
@@ -0,0 +1,31 @@
+package game.board;
+
+/**
+ * Result of the validation of a move, see MoveGenerator.validate.
+ * NONE means the move is legal, every other value names the first rule the move breaks.
+ */
+public enum MoveError {
+	NONE("The move is valid"),
+	MALFORMED("The move code is no move"),
+	DESTINATION_MISSING("The move has no destination"),
+	DESTINATION_OCCUPIED("The destination is occupied"),
+	SOURCE_NOT_ALLOWED("A piece is placed without source in the placing pieces phase"),
+	SOURCE_MISSING("The move has no source"),
+	SOURCE_NOT_OWNED("The source isn't occupied by the player"),
+	NOT_ADJACENT("The destination isn't adjacent to the source"),
+	REMOVAL_MISSING("The move makes a mill, a piece of the opponent has to be removed"),
+	REMOVAL_NOT_ALLOWED("The move doesn't allow to remove a piece"),
+	REMOVAL_NOT_OPPONENT("The piece to remove doesn't belong to the opponent"),
+	REMOVAL_IN_MILL("The piece to remove belongs to a mill");
+
+	private final String message;
+
+	private MoveError(String message) {
+		this.message = message;
+	}
+
+	@Override
+	public String toString() {
+		return message;
+	}
+}
@@ -0,0 +1,404 @@
+package game.board;
+import java.util.List;
+import game.GamePhase;
+
+/**
+ * Generates the moves of a player from bit masks of the occupied positions, in every phase of the game.
+ *
+ * Nothing is tested by changing the board: the destinations closing a mill are computed for a source at once,
+ * the removable pieces of the opponent once per position. This matters most for a flying player, who may move each
+ * of its pieces to every empty position, and every move closing a mill is multiplied by the pieces that can be removed.
+ *
+ * The moves are generated lazily in two stages: first the captures, i.e. the moves closing a mill together with
+ * each removable piece, then the quiet moves, each stage by ascending source, destination and piece to remove.
+ * So a search stopping early at a cutoff never generates the remaining moves.
+ * If no piece of the opponent can be removed, moves closing a mill remove nothing and are quiet moves.
+ * An instance is reused for many positions by reset, generating moves allocates nothing.
+ */
+public class MoveGenerator {
+	private static final int[] MILL_MASKS = new int[Board.POSSIBLE_MILLS.length];
+	/**
+	 * The adjacent positions of every position as bit mask
+	 */
+	private static final int[] ADJACENT_MASKS = new int[Board.BOARD_SIZE];
+	private static final int ALL_POSITIONS = (1 << Board.BOARD_SIZE) - 1;
+	private static final int CAPTURES = 0, QUIETS = 1, DONE = 2;
+
+	static {
+		for(int i = 0; i < MILL_MASKS.length; i++) {
+			for(int index : Board.POSSIBLE_MILLS[i]) {
+				MILL_MASKS[i] |= 1 << index;
+			}
+		}
+		Board board = new Board();
+		for(int i = 0; i < Board.BOARD_SIZE; i++) {
+			for(Position adjacent : board.getPos(i).getAdjacentPositions()) {
+				ADJACENT_MASKS[i] |= 1 << adjacent.getIndex();
+			}
+		}
+	}
+
+	private GamePhase phase;
+	private int own;
+	private int empty;
+	private int removable;
+	private int stage;
+	private int sources;
+	private int source;
+	private int destinations;
+	private int destination;
+	private int removals;
+
+	/**
+	 * Starts the generation for a position
+	 * @param phase The game phase of the player in turn
+	 * @param ownPositions The occupied positions of the player in turn
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @param opponentFlying Is the opponent in the flying pieces phase? Then all of its pieces can be removed.
+	 */
+	public void reset(GamePhase phase, int ownPositions, int opponentPositions, boolean opponentFlying) {
+		this.phase = phase;
+		own = ownPositions;
+		empty = ~(ownPositions | opponentPositions) & ALL_POSITIONS;
+		removable = opponentFlying ? opponentPositions : opponentPositions & ~millPieces(opponentPositions);
+		stage = CAPTURES;
+		startSources();
+	}
+
+	/**
+	 * @return Has the player any move?
+	 */
+	public boolean hasMoves() {
+		return canMove(phase, own, empty);
+	}
+
+	/**
+	 * Tells from the bit masks alone whether a player can move, without a generator for the position
+	 * @param phase The game phase of the player
+	 * @param ownPositions The occupied positions of the player
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @return Has the player any move? A player without moves has lost.
+	 */
+	public static boolean hasMoves(GamePhase phase, int ownPositions, int opponentPositions) {
+		return canMove(phase, ownPositions, ~(ownPositions | opponentPositions) & ALL_POSITIONS);
+	}
+
+	/**
+	 * Counts the moves of a player in the moving phase, ignoring the pieces to remove:
+	 * for every piece the number of its adjacent empty positions
+	 * @param ownPositions The occupied positions of the player
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @return The number of moves along the lines of the board
+	 */
+	public static int mobility(int ownPositions, int opponentPositions) {
+		int empty = ~(ownPositions | opponentPositions) & ALL_POSITIONS;
+		int mobility = 0;
+		for(int pieces = ownPositions; pieces != 0; pieces &= pieces - 1) {
+			mobility += Integer.bitCount(ADJACENT_MASKS[Integer.numberOfTrailingZeros(pieces)] & empty);
+		}
+		return mobility;
+	}
+
+	/**
+	 * @param ownPositions The occupied positions of a player
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @return The number of pieces of the player without an adjacent empty position
+	 */
+	public static int blockedPieces(int ownPositions, int opponentPositions) {
+		int occupied = ownPositions | opponentPositions;
+		int blocked = 0;
+		for(int pieces = ownPositions; pieces != 0; pieces &= pieces - 1) {
+			if((ADJACENT_MASKS[Integer.numberOfTrailingZeros(pieces)] & ~occupied) == 0) {
+				blocked++;
+			}
+		}
+		return blocked;
+	}
+
+	/**
+	 * Looks for a move that leaves the opponent, who is in the moving phase, without any move, i.e. wins at once.
+	 * This is the case if the pieces of the opponent have a single adjacent empty position left and the player
+	 * can occupy it with a piece that frees no position next to the opponent. Moves closing a mill aren't considered,
+	 * since the removal of a piece might free the opponent again.
+	 * @param phase The game phase of the player in turn
+	 * @param ownPositions The occupied positions of the player in turn
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @return The code of such a move or -1 if there is none
+	 */
+	public static int blockadeMove(GamePhase phase, int ownPositions, int opponentPositions) {
+		int empty = ~(ownPositions | opponentPositions) & ALL_POSITIONS;
+		//the positions next to the pieces of the opponent, the empty ones are those it could move to
+		int surrounding = 0;
+		for(int pieces = opponentPositions; pieces != 0; pieces &= pieces - 1) {
+			surrounding |= ADJACENT_MASKS[Integer.numberOfTrailingZeros(pieces)];
+		}
+		int escapes = surrounding & empty;
+		if(escapes == 0 || (escapes & escapes - 1) != 0) {
+			return -1;
+		}
+		int to = Integer.numberOfTrailingZeros(escapes);
+		boolean removes = (opponentPositions & ~millPieces(opponentPositions)) != 0;
+		if(phase == GamePhase.PLACING_PIECES) {
+			boolean mill = removes && (millDestinations(ownPositions, empty) & escapes) != 0;
+			return mill ? -1 : Move.toCode(Move.NO_POSITION, to, Move.NO_POSITION);
+		}
+		int sources = ownPositions & ~surrounding;
+		if(phase == GamePhase.MOVING_PIECES) {
+			sources &= ADJACENT_MASKS[to];
+		}
+		for(; sources != 0; sources &= sources - 1) {
+			int from = Integer.numberOfTrailingZeros(sources);
+			if(!removes || (millDestinations(ownPositions & ~(1 << from), empty) & escapes) == 0) {
+				return Move.toCode(from, to, Move.NO_POSITION);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The code of the next move (see Move.toCode()), captures first, or -1 if all moves were generated
+	 */
+	public int next() {
+		int code = nextCapture();
+		return code >= 0 ? code : nextQuiet();
+	}
+
+	/**
+	 * @return The code of the next capture or -1 if all captures were generated
+	 */
+	public int nextCapture() {
+		while(stage == CAPTURES) {
+			if(removals != 0) {
+				int toRemove = Integer.numberOfTrailingZeros(removals);
+				removals &= removals - 1;
+				return Move.toCode(source, destination, toRemove);
+			}
+			if(destinations != 0) {
+				destination = Integer.numberOfTrailingZeros(destinations);
+				destinations &= destinations - 1;
+				removals = removable;
+			}
+			else if(!nextSource()) {
+				stage = QUIETS;
+				startSources();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skips the remaining captures if necessary
+	 * @return The code of the next quiet move or -1 if all moves were generated
+	 */
+	public int nextQuiet() {
+		if(stage == CAPTURES) {
+			stage = QUIETS;
+			startSources();
+		}
+		while(stage == QUIETS) {
+			if(destinations != 0) {
+				int to = Integer.numberOfTrailingZeros(destinations);
+				destinations &= destinations - 1;
+				return Move.toCode(source, to, Move.NO_POSITION);
+			}
+			if(!nextSource()) {
+				stage = DONE;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether a move is one of the generated ones, e.g. a move remembered from an earlier search
+	 * @param code The code of the move
+	 * @return Is the move legal in the position?
+	 */
+	public boolean contains(int code) {
+		int from = Move.sourceOf(code), to = Move.destinationOf(code), toRemove = Move.pieceToRemoveOf(code);
+		if(to == Move.NO_POSITION || (empty & 1 << to) == 0) {
+			return false;
+		}
+		if(phase == GamePhase.PLACING_PIECES ? from != Move.NO_POSITION
+				: from == Move.NO_POSITION || (own & 1 << from) == 0 || (reach(from) & 1 << to) == 0) {
+			return false;
+		}
+		boolean mill = removable != 0 && (millDestinations(remaining(from), empty) & 1 << to) != 0;
+		return mill ? toRemove != Move.NO_POSITION && (removable & 1 << toRemove) != 0 : toRemove == Move.NO_POSITION;
+	}
+
+	/**
+	 * Validates a move supplied from outside, e.g. by a human or a client, in one pass over the masks without allocating anything.
+	 * Other than contains it doesn't need a generator reset for the position and tells why a move is illegal.
+	 * @param code The code of the move, see Move.toCode()
+	 * @param phase The game phase of the player making the move
+	 * @param ownPositions The occupied positions of the player making the move
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @param opponentFlying Is the opponent in the flying pieces phase? Then all of its pieces can be removed.
+	 * @return NONE if the move is legal, otherwise the first rule it breaks
+	 */
+	public static MoveError validate(int code, GamePhase phase, int ownPositions, int opponentPositions, boolean opponentFlying) {
+		int from = Move.sourceOf(code), to = Move.destinationOf(code), toRemove = Move.pieceToRemoveOf(code);
+		if(code < 0 || code >>> 15 != 0 || !isIndex(from) || !isIndex(to) || !isIndex(toRemove)) {
+			return MoveError.MALFORMED;
+		}
+		if(to == Move.NO_POSITION) {
+			return MoveError.DESTINATION_MISSING;
+		}
+		int empty = ~(ownPositions | opponentPositions) & ALL_POSITIONS;
+		if((empty & 1 << to) == 0) {
+			return MoveError.DESTINATION_OCCUPIED;
+		}
+		if(phase == GamePhase.PLACING_PIECES) {
+			if(from != Move.NO_POSITION) {
+				return MoveError.SOURCE_NOT_ALLOWED;
+			}
+		}
+		else if(from == Move.NO_POSITION) {
+			return MoveError.SOURCE_MISSING;
+		}
+		else if((ownPositions & 1 << from) == 0) {
+			return MoveError.SOURCE_NOT_OWNED;
+		}
+		else if(phase == GamePhase.MOVING_PIECES && (ADJACENT_MASKS[from] & 1 << to) == 0) {
+			return MoveError.NOT_ADJACENT;
+		}
+		int remaining = from == Move.NO_POSITION ? ownPositions : ownPositions & ~(1 << from);
+		boolean mill = (millDestinations(remaining, empty) & 1 << to) != 0;
+		//you can only remove pieces that don't belong to mills, unless the opponent is flying
+		int removable = !mill ? 0 : opponentFlying ? opponentPositions : opponentPositions & ~millPieces(opponentPositions);
+		if(removable == 0) {
+			return toRemove == Move.NO_POSITION ? MoveError.NONE : MoveError.REMOVAL_NOT_ALLOWED;
+		}
+		if(toRemove == Move.NO_POSITION) {
+			return MoveError.REMOVAL_MISSING;
+		}
+		if((opponentPositions & 1 << toRemove) == 0) {
+			return MoveError.REMOVAL_NOT_OPPONENT;
+		}
+		return (removable & 1 << toRemove) != 0 ? MoveError.NONE : MoveError.REMOVAL_IN_MILL;
+	}
+
+	/**
+	 * @param code The code of a move, its piece to remove is ignored
+	 * @param ownPositions The occupied positions of the player making the move
+	 * @param opponentPositions The occupied positions of the opponent
+	 * @return Does the move close a mill?
+	 */
+	public static boolean closesMill(int code, int ownPositions, int opponentPositions) {
+		int from = Move.sourceOf(code), to = Move.destinationOf(code);
+		int remaining = from == Move.NO_POSITION ? ownPositions : ownPositions & ~(1 << from);
+		int empty = ~(ownPositions | opponentPositions) & ALL_POSITIONS;
+		return (millDestinations(remaining, empty) & 1 << to) != 0;
+	}
+
+	/**
+	 * @param code The code of a generated move
+	 * @return Does the move remove a piece?
+	 */
+	public static boolean isCapture(int code) {
+		return Move.pieceToRemoveOf(code) != Move.NO_POSITION;
+	}
+
+	/**
+	 * Appends all moves to a list
+	 * @param board The board the moves refer to
+	 * @param moves The list
+	 */
+	public void addAll(Board board, List<Move> moves) {
+		for(int code = next(); code >= 0; code = next()) {
+			moves.add(Move.fromCode(code, board));
+		}
+	}
+
+	/**
+	 * @param pieces The occupied positions of a player
+	 * @param empty The empty positions
+	 * @return The empty positions completing a mill of the pieces
+	 */
+	public static int millDestinations(int pieces, int empty) {
+		int destinations = 0;
+		for(int mask : MILL_MASKS) {
+			int missing = mask & ~pieces;
+			//exactly one position of the row is missing and it is empty
+			if((missing & missing - 1) == 0 && (missing & empty) != 0) {
+				destinations |= missing;
+			}
+		}
+		return destinations;
+	}
+
+	/**
+	 * @param pieces The occupied positions of a player
+	 * @return The positions of the pieces belonging to a mill
+	 */
+	public static int millPieces(int pieces) {
+		int inMill = 0;
+		for(int mask : MILL_MASKS) {
+			if((pieces & mask) == mask) {
+				inMill |= mask;
+			}
+		}
+		return inMill;
+	}
+
+	private static boolean canMove(GamePhase phase, int own, int empty) {
+		if(phase != GamePhase.MOVING_PIECES) {
+			return empty != 0 && (phase == GamePhase.PLACING_PIECES || own != 0);
+		}
+		for(int pieces = own; pieces != 0; pieces &= pieces - 1) {
+			if((ADJACENT_MASKS[Integer.numberOfTrailingZeros(pieces)] & empty) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isIndex(int index) {
+		return index < Board.BOARD_SIZE || index == Move.NO_POSITION;
+	}
+
+	/**
+	 * Starts the sources of a stage, a placed piece has only one "source" (NO_POSITION)
+	 */
+	private void startSources() {
+		sources = phase == GamePhase.PLACING_PIECES ? 1 : own;
+		destinations = 0;
+		removals = 0;
+	}
+
+	/**
+	 * Continues with the next source and its destinations of the current stage
+	 * @return Was there another source?
+	 */
+	private boolean nextSource() {
+		if(sources == 0) {
+			return false;
+		}
+		if(phase == GamePhase.PLACING_PIECES) {
+			source = Move.NO_POSITION;
+			sources = 0;
+		}
+		else {
+			source = Integer.numberOfTrailingZeros(sources);
+			sources &= sources - 1;
+		}
+		int reach = reach(source) & empty;
+		int mills = removable == 0 ? 0 : millDestinations(remaining(source), empty) & reach;
+		destinations = stage == CAPTURES ? mills : reach & ~mills;
+		return true;
+	}
+
+	/**
+	 * @return The positions a piece at source may move to, ignoring occupation
+	 */
+	private int reach(int source) {
+		return phase == GamePhase.MOVING_PIECES ? ADJACENT_MASKS[source] : ALL_POSITIONS;
+	}
+
+	/**
+	 * @return The pieces of the player remaining after the piece at source was lifted
+	 */
+	private int remaining(int source) {
+		return source == Move.NO_POSITION ? own : own & ~(1 << source);
+	}
+}
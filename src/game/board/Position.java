@@ -52,7 +52,17 @@ public class Position {
 		return playerOccupying;
 	}
 	
+	/**
+	 * Sets the occupying player and keeps the occupancy masks of the players in sync
+	 * @param playerOccupying The new occupying player or null if the position becomes unoccupied
+	 */
 	public void setPlayerOccupying(Player playerOccupying) {
+		if(this.playerOccupying != null) {
+			this.playerOccupying.removeOccupiedPosition(index);
+		}
+		if(playerOccupying != null) {
+			playerOccupying.addOccupiedPosition(index);
+		}
 		this.playerOccupying = playerOccupying;
 	}
 	
@@ -0,0 +1,280 @@
+package game.nnue;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import game.*;
+import game.board.*;
+import game.players.*;
+
+/**
+ * Evaluates positions with a NeuralNetwork. The first layer is the expensive one, so its sums
+ * (the accumulators, one per perspective) are not computed for every position, but updated by the few features
+ * changed by a move. Therefore the evaluator listens to the moves of the game it is attached to.
+ *
+ * The loops run over plain primitive arrays, which the JIT compiles to SIMD instructions where the CPU supports them.
+ * If the Vector API is available (see VectorSupport), VectorInference runs them with explicit vectors instead,
+ * which also covers the dense layers the JIT doesn't vectorize.
+ * Not thread-safe, every searching thread needs its own evaluator.
+ */
+public class NeuralEvaluator implements MoveListener {
+	private static final int PIECES = 9;
+
+	private final NeuralNetwork network;
+	/**
+	 * The accumulators of the perspectives of the human player (0) and the AI player (1)
+	 */
+	private final short[][] accumulators = new short[2][NeuralNetwork.HIDDEN];
+	private final byte[] activations = new byte[2 * NeuralNetwork.HIDDEN];
+	private final int[] hidden = new int[NeuralNetwork.SECOND];
+	/**
+	 * The inference with the Vector API or null for the scalar loops
+	 */
+	private final VectorInference vector;
+	private Game game;
+
+	public NeuralEvaluator(NeuralNetwork network) {
+		this.network = network;
+		//the class of the Vector API must not be loaded without the module
+		this.vector = VectorSupport.isAvailable() ? new VectorInference() : null;
+	}
+
+	/**
+	 * Starts following the moves of a game, detaching from the game followed before
+	 * @param game The game to evaluate the positions of
+	 */
+	public void attach(Game game) {
+		detach();
+		this.game = game;
+		refresh();
+		game.addMoveListener(this);
+	}
+
+	/**
+	 * Stops following the moves of the game
+	 */
+	public void detach() {
+		if(game != null) {
+			game.removeMoveListener(this);
+			game = null;
+		}
+	}
+
+	/**
+	 * Computes the accumulators from scratch
+	 */
+	public void refresh() {
+		Player[] players = {game.getHumanPlayer(), game.getAIPlayer()};
+		for(int perspective = 0; perspective < 2; perspective++) {
+			short[] accumulator = accumulators[perspective];
+			System.arraycopy(network.featureBiases, 0, accumulator, 0, NeuralNetwork.HIDDEN);
+			for(int color = 0; color < 2; color++) {
+				boolean own = color == perspective;
+				int occupied = players[color].getOccupiedPositions();
+				for(int i = 0; i < Board.BOARD_SIZE; i++) {
+					if((occupied & 1 << i) != 0) {
+						add(accumulator, NeuralNetwork.squareFeature(own, i));
+					}
+				}
+				add(accumulator, NeuralNetwork.handFeature(own, PIECES - players[color].getNumOfPlacedPieces()));
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the position of the attached game
+	 * @param sideToMove The player in turn
+	 * @return The score for sideToMove
+	 */
+	public int evaluate(Player sideToMove) {
+		int perspective = colorOf(sideToMove);
+		if(vector != null) {
+			return vector.evaluate(network, accumulators[perspective], accumulators[1 - perspective], hidden);
+		}
+		clip(accumulators[perspective], 0);
+		clip(accumulators[1 - perspective], NeuralNetwork.HIDDEN);
+
+		int inputs = 2 * NeuralNetwork.HIDDEN;
+		for(int j = 0; j < NeuralNetwork.SECOND; j++) {
+			int sum = 0, row = j * inputs;
+			for(int i = 0; i < inputs; i++) {
+				sum += network.hiddenWeights[row + i] * activations[i];
+			}
+			sum = network.hiddenBiases[j] + sum >> NeuralNetwork.HIDDEN_SHIFT;
+			hidden[j] = Math.max(0, Math.min(NeuralNetwork.ACTIVATION_MAX, sum));
+		}
+		int output = network.outputBias;
+		for(int j = 0; j < NeuralNetwork.SECOND; j++) {
+			output += network.outputWeights[j] * hidden[j];
+		}
+		return output >> NeuralNetwork.OUTPUT_SHIFT;
+	}
+
+	@Override
+	public void moveApplied(int moveCode, Player player) {
+		int color = colorOf(player);
+		addPiece(color, Move.destinationOf(moveCode));
+		int source = Move.sourceOf(moveCode);
+		if(source == Move.NO_POSITION) {
+			//the placed counter is already incremented
+			changeHand(color, PIECES - player.getNumOfPlacedPieces() + 1, PIECES - player.getNumOfPlacedPieces());
+		}
+		else {
+			removePiece(color, source);
+		}
+		if(Move.pieceToRemoveOf(moveCode) != Move.NO_POSITION) {
+			removePiece(1 - color, Move.pieceToRemoveOf(moveCode));
+		}
+	}
+
+	@Override
+	public void moveUndone(int moveCode, Player player) {
+		int color = colorOf(player);
+		removePiece(color, Move.destinationOf(moveCode));
+		int source = Move.sourceOf(moveCode);
+		if(source == Move.NO_POSITION) {
+			//the placed counter is already decremented
+			changeHand(color, PIECES - player.getNumOfPlacedPieces() - 1, PIECES - player.getNumOfPlacedPieces());
+		}
+		else {
+			addPiece(color, source);
+		}
+		if(Move.pieceToRemoveOf(moveCode) != Move.NO_POSITION) {
+			addPiece(1 - color, Move.pieceToRemoveOf(moveCode));
+		}
+	}
+
+	@Override
+	public void pieceRemoved(int index, Player removingPlayer) {
+		removePiece(1 - colorOf(removingPlayer), index);
+	}
+
+	private int colorOf(Player player) {
+		return player == game.getHumanPlayer() ? 0 : 1;
+	}
+
+	private void addPiece(int color, int index) {
+		add(accumulators[0], NeuralNetwork.squareFeature(color == 0, index));
+		add(accumulators[1], NeuralNetwork.squareFeature(color == 1, index));
+	}
+
+	private void removePiece(int color, int index) {
+		subtract(accumulators[0], NeuralNetwork.squareFeature(color == 0, index));
+		subtract(accumulators[1], NeuralNetwork.squareFeature(color == 1, index));
+	}
+
+	private void changeHand(int color, int oldPiecesInHand, int newPiecesInHand) {
+		for(int perspective = 0; perspective < 2; perspective++) {
+			subtract(accumulators[perspective], NeuralNetwork.handFeature(color == perspective, oldPiecesInHand));
+			add(accumulators[perspective], NeuralNetwork.handFeature(color == perspective, newPiecesInHand));
+		}
+	}
+
+	private void add(short[] accumulator, int feature) {
+		int row = feature * NeuralNetwork.HIDDEN;
+		if(vector != null) {
+			VectorInference.add(accumulator, network.featureWeights, row);
+			return;
+		}
+		for(int i = 0; i < NeuralNetwork.HIDDEN; i++) {
+			accumulator[i] += network.featureWeights[row + i];
+		}
+	}
+
+	private void subtract(short[] accumulator, int feature) {
+		int row = feature * NeuralNetwork.HIDDEN;
+		if(vector != null) {
+			VectorInference.subtract(accumulator, network.featureWeights, row);
+			return;
+		}
+		for(int i = 0; i < NeuralNetwork.HIDDEN; i++) {
+			accumulator[i] -= network.featureWeights[row + i];
+		}
+	}
+
+	/**
+	 * Clips an accumulator into the activations
+	 */
+	private void clip(short[] accumulator, int offset) {
+		for(int i = 0; i < NeuralNetwork.HIDDEN; i++) {
+			activations[offset + i] = (byte) Math.max(0, Math.min(NeuralNetwork.ACTIVATION_MAX, accumulator[i]));
+		}
+	}
+
+	/**
+	 * The inference with the Vector API, giving exactly the results of the scalar loops.
+	 * The accumulators are updated a vector of shorts at a time. For the dense layers the clipped activations 
+	 * and the weights are widened to ints, eight lanes at a time, and the products are summed up lane by lane.
+	 * Only created if VectorSupport.isAvailable(), the class can't even be loaded without the module.
+	 */
+	private static final class VectorInference {
+		private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+		private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+		//the bytes and shorts widened to one vector of ints
+		private static final VectorSpecies<Byte> BYTES_OF_INTS = ByteVector.SPECIES_64;
+		private static final VectorSpecies<Short> SHORTS_OF_INTS = ShortVector.SPECIES_128;
+
+		/**
+		 * The clipped accumulators of both perspectives, the one of the player in turn first
+		 */
+		private final int[] activations = new int[2 * NeuralNetwork.HIDDEN];
+
+		static void add(short[] accumulator, short[] weights, int row) {
+			for(int i = 0; i < NeuralNetwork.HIDDEN; i += SHORTS.length()) {
+				ShortVector.fromArray(SHORTS, accumulator, i).add(ShortVector.fromArray(SHORTS, weights, row + i)).intoArray(accumulator, i);
+			}
+		}
+
+		static void subtract(short[] accumulator, short[] weights, int row) {
+			for(int i = 0; i < NeuralNetwork.HIDDEN; i += SHORTS.length()) {
+				ShortVector.fromArray(SHORTS, accumulator, i).sub(ShortVector.fromArray(SHORTS, weights, row + i)).intoArray(accumulator, i);
+			}
+		}
+
+		/**
+		 * @param network The weights
+		 * @param own The accumulator of the player in turn
+		 * @param other The accumulator of its opponent
+		 * @param hidden Takes the clipped neurons of the second layer
+		 * @return The score for the player in turn, see NeuralEvaluator.evaluate
+		 */
+		int evaluate(NeuralNetwork network, short[] own, short[] other, int[] hidden) {
+			clip(own, 0);
+			clip(other, NeuralNetwork.HIDDEN);
+
+			int inputs = 2 * NeuralNetwork.HIDDEN;
+			for(int j = 0; j < NeuralNetwork.SECOND; j++) {
+				int row = j * inputs;
+				IntVector sums = IntVector.zero(INTS);
+				for(int i = 0; i < inputs; i += INTS.length()) {
+					sums = sums.add(widen(network.hiddenWeights, row + i).mul(IntVector.fromArray(INTS, activations, i)));
+				}
+				int sum = network.hiddenBiases[j] + sums.reduceLanes(VectorOperators.ADD) >> NeuralNetwork.HIDDEN_SHIFT;
+				hidden[j] = Math.max(0, Math.min(NeuralNetwork.ACTIVATION_MAX, sum));
+			}
+			IntVector outputs = IntVector.zero(INTS);
+			for(int j = 0; j < NeuralNetwork.SECOND; j += INTS.length()) {
+				outputs = outputs.add(widen(network.outputWeights, j).mul(IntVector.fromArray(INTS, hidden, j)));
+			}
+			return network.outputBias + outputs.reduceLanes(VectorOperators.ADD) >> NeuralNetwork.OUTPUT_SHIFT;
+		}
+
+		/**
+		 * Clips an accumulator into the activations
+		 */
+		private void clip(short[] accumulator, int offset) {
+			for(int i = 0; i < NeuralNetwork.HIDDEN; i += INTS.length()) {
+				IntVector values = (IntVector) ShortVector.fromArray(SHORTS_OF_INTS, accumulator, i).convertShape(VectorOperators.S2I, INTS, 0);
+				values.max(0).min(NeuralNetwork.ACTIVATION_MAX).intoArray(activations, offset + i);
+			}
+		}
+
+		/**
+		 * @return The bytes from the offset on as a vector of ints
+		 */
+		private static IntVector widen(byte[] weights, int offset) {
+			return (IntVector) ByteVector.fromArray(BYTES_OF_INTS, weights, offset).convertShape(VectorOperators.B2I, INTS, 0);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package game.nnue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import game.board.*;
+
+/**
+ * Quantized weights of a small efficiently updatable neural network (NNUE) evaluating positions.
+ *
+ * The input consists of sparse binary features seen from one player (the perspective): the pieces of the perspective
+ * and of its opponent on the 24 positions and the number of pieces each of them still has to place (one-hot from 0 to 9).
+ * The first layer maps the features of each perspective to HIDDEN int16 neurons, which are kept up to date incrementally
+ * by the NeuralEvaluator. Both perspectives, the one of the player in turn first, are clipped to [0, 127] and feed a 
+ * dense int8 layer of SECOND neurons, which is clipped again and feeds the single output neuron.
+ *
+ * The weight file is written big-endian by DataOutputStream: the magic "NMMN", the version as int,
+ * then the feature weights (FEATURES x HIDDEN shorts, feature by feature), the feature biases (HIDDEN shorts),
+ * the hidden weights (SECOND x 2 HIDDEN bytes, neuron by neuron), the hidden biases (SECOND ints),
+ * the output weights (SECOND bytes) and the output bias (int).
+ */
+public class NeuralNetwork {
+	public static final int SQUARES = Board.BOARD_SIZE;
+	/**
+	 * A player has 0 to 9 pieces left to place
+	 */
+	public static final int HAND_SIZES = 10;
+	public static final int FEATURES = 2 * SQUARES + 2 * HAND_SIZES;
+	public static final int HIDDEN = 64;
+	public static final int SECOND = 16;
+	/**
+	 * Upper bound of the clipped activations, so they fit into a byte
+	 */
+	static final int ACTIVATION_MAX = 127;
+	/**
+	 * The sums of the second layer are shifted by this to get back into the range of the activations
+	 */
+	static final int HIDDEN_SHIFT = 6;
+	/**
+	 * The output is shifted by this to get the score
+	 */
+	static final int OUTPUT_SHIFT = 8;
+	private static final int MAGIC = 0x4E4D4D4E;
+	private static final int VERSION = 1;
+
+	final short[] featureWeights = new short[FEATURES * HIDDEN];
+	final short[] featureBiases = new short[HIDDEN];
+	final byte[] hiddenWeights = new byte[SECOND * 2 * HIDDEN];
+	final int[] hiddenBiases = new int[SECOND];
+	final byte[] outputWeights = new byte[SECOND];
+	int outputBias;
+
+	private NeuralNetwork() {
+	}
+
+	/**
+	 * @param own Is the piece one of the perspective?
+	 * @param index The index of the position
+	 * @return The feature of a piece on the board
+	 */
+	public static int squareFeature(boolean own, int index) {
+		return (own ? 0 : SQUARES) + index;
+	}
+
+	/**
+	 * @param own Are the pieces the ones of the perspective?
+	 * @param piecesInHand The number of pieces left to place
+	 * @return The feature of the pieces left to place
+	 */
+	public static int handFeature(boolean own, int piecesInHand) {
+		return 2 * SQUARES + (own ? 0 : HAND_SIZES) + piecesInHand;
+	}
+
+	/**
+	 * Reads a weight file
+	 * @param file The file, see the format above
+	 * @return The network
+	 * @throws IOException if the file can't be read or isn't a weight file of this version
+	 */
+	public static NeuralNetwork load(Path file) throws IOException {
+		NeuralNetwork network = new NeuralNetwork();
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is no weight file");
+			}
+			int version = in.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported weight file version " + version);
+			}
+			for(int i = 0; i < network.featureWeights.length; i++) {
+				network.featureWeights[i] = in.readShort();
+			}
+			for(int i = 0; i < HIDDEN; i++) {
+				network.featureBiases[i] = in.readShort();
+			}
+			in.readFully(network.hiddenWeights);
+			for(int i = 0; i < SECOND; i++) {
+				network.hiddenBiases[i] = in.readInt();
+			}
+			in.readFully(network.outputWeights);
+			network.outputBias = in.readInt();
+		}
+		return network;
+	}
+
+	/**
+	 * Writes the network in the format read by load
+	 * @param file The file to write
+	 * @throws IOException
+	 */
+	public void save(Path file) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for(short w : featureWeights) {
+				out.writeShort(w);
+			}
+			for(short b : featureBiases) {
+				out.writeShort(b);
+			}
+			out.write(hiddenWeights);
+			for(int b : hiddenBiases) {
+				out.writeInt(b);
+			}
+			out.write(outputWeights);
+			out.writeInt(outputBias);
+		}
+	}
+
+	/**
+	 * Creates a network with small random weights, e.g. as starting point of a training
+	 * @param seed The seed of the weights
+	 * @return The untrained network
+	 */
+	public static NeuralNetwork random(long seed) {
+		Random random = new Random(seed);
+		NeuralNetwork network = new NeuralNetwork();
+		for(int i = 0; i < network.featureWeights.length; i++) {
+			network.featureWeights[i] = (short) (random.nextInt(65) - 32);
+		}
+		for(int i = 0; i < network.hiddenWeights.length; i++) {
+			network.hiddenWeights[i] = (byte) (random.nextInt(41) - 20);
+		}
+		for(int i = 0; i < SECOND; i++) {
+			network.outputWeights[i] = (byte) (random.nextInt(41) - 20);
+		}
+		return network;
+	}
+}
@@ -0,0 +1,89 @@
+package game.nnue;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import game.*;
+import game.board.*;
+import game.players.*;
+
+/**
+ * Creates training data for the NeuralNetwork by self-play of the Alpha Beta search.
+ * The first plies of every game are random, so the games differ.
+ *
+ * Every output line holds the tab separated fields: position key in hex (see Game.getPositionKey, 
+ * it contains the occupancy, the player in turn and the placed pieces, i.e. all input features), 
+ * the score of the search for the player in turn and the result of the game for the player in turn 
+ * (1 win, 0 draw, -1 loss).
+ *
+ * Usage: TrainingDataExporter output [games] [depth] [seed]
+ */
+public class TrainingDataExporter {
+	private static final int RANDOM_PLIES = 8;
+	private static final int MAX_PLIES = 200;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.err.println("Usage: TrainingDataExporter output [games] [depth] [seed]");
+			System.exit(1);
+		}
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		Random random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 1);
+
+		long positions = 0;
+		try(BufferedWriter out = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+			for(int g = 0; g < games; g++) {
+				positions += playGame(depth, random, out);
+			}
+		}
+		System.err.println(games + " games, " + positions + " positions written");
+	}
+
+	/**
+	 * Plays one game and writes its positions
+	 * @return The number of positions written
+	 */
+	private static int playGame(int depth, Random random, BufferedWriter out) throws IOException {
+		Game game = new Game(depth, 'W', 'B');
+		AIPlayer engine = game.getAIPlayer();
+		engine.enableTranspositionTable(18);
+		//equally scored moves are chosen by the seeded generator as well, so an export can be repeated
+		engine.setRandomGenerator(new SplittableRandom(random.nextLong()));
+		List<Long> keys = new ArrayList<>();
+		List<Integer> scores = new ArrayList<>();
+		List<Player> sides = new ArrayList<>();
+
+		Player current = game.getHumanPlayer();
+		int plies = 0;
+		while(!game.hasLost(current) && !game.isDraw() && plies < MAX_PLIES) {
+			Move move;
+			if(plies < RANDOM_PLIES) {
+				List<Move> moves = game.generatePossibleMoves(current);
+				move = moves.get(random.nextInt(moves.size()));
+			}
+			else {
+				SearchResult result = engine.search(game, current);
+				keys.add(game.getPositionKey(current));
+				scores.add(result.getScore());
+				sides.add(current);
+				move = result.getMove();
+			}
+			game.applyMoveCode(move.toCode(), current);
+			current = game.getOtherPlayer(current);
+			plies++;
+		}
+
+		Player loser = game.hasLost(current) ? current : null;
+		for(int i = 0; i < keys.size(); i++) {
+			int result = loser == null ? 0 : loser == sides.get(i) ? -1 : 1;
+			out.write(Long.toHexString(keys.get(i)) + "\t" + scores.get(i) + "\t" + result + "\n");
+		}
+		return keys.size();
+	}
+}
@@ -1,18 +1,138 @@
 package game.players;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 import game.*;
 import game.board.*;
+import game.nnue.*;
+import game.record.*;
 
 /**
  * This class models the Computer Player
  */
 public class AIPlayer extends Player {
 	private final int depth;
+	/**
+	 * Proves forced wins in tactical positions, null if disabled
+	 */
+	private ProofNumberSearch solver;
+	private long solverMaxNodes;
+	private long solverMaxMillis;
+	/**
+	 * Score reported for a move proven to win
+	 */
+	private static final int PROVEN_WIN_SCORE = 1000;
+	private static final int DRAW_SCORE = 0;
+	/**
+	 * Size of the transposition table created for searches depending on one
+	 */
+	private static final int DEFAULT_TABLE_BITS = 20;
+	/**
+	 * Memory of the search, null if disabled
+	 */
+	private TranspositionTable table;
+	/**
+	 * Scores of leaf positions, null if disabled
+	 */
+	private EvalCache evalCache;
+	/**
+	 * Neural evaluation replacing evaluate, null if disabled
+	 */
+	private NeuralEvaluator neuralEvaluator;
+	/**
+	 * Evaluates the leaves below nodes of depth 1 at once, null if disabled
+	 */
+	private BatchEvaluator batchEvaluator;
+	private SearchMode searchMode = SearchMode.ALPHA_BETA;
+	/**
+	 * Chooses among the equally scored best moves
+	 */
+	private RandomGenerator random = new SplittableRandom();
+	/**
+	 * In the deterministic mode the choice among equal moves depends only on the seed and the position
+	 */
+	private boolean deterministic;
+	private long seed;
+	/**
+	 * Best move of the last call of searchRoot and its principal variation
+	 */
+	private Move rootBestMove;
+	private int[] rootBestVariation;
+	/**
+	 * Maximum depth of a search, limits the principal variation table
+	 */
+	static final int MAX_PLY = 64;
+	/**
+	 * The state of the sequential search along the path, created by the first search,
+	 * it also counts the nodes of the recent search
+	 */
+	private SearchStack stack;
+	/**
+	 * Receives the explored trees, null if disabled
+	 */
+	private SearchTreeWriter treeWriter;
+	/**
+	 * Is the tree of the running search written?
+	 */
+	private boolean writingTree;
+	/**
+	 * Distributes the time of a game among the moves, null to search every move to the full depth
+	 */
+	private TimeManager timeManager;
+	/**
+	 * Is the running search timed by timeManager?
+	 */
+	private boolean managingTime;
+	/**
+	 * Searches with several threads, null to search with one
+	 */
+	private ParallelSearch parallelSearch;
+	/**
+	 * The principal variation of the previous iteration or turn, its moves are searched first along the line
+	 */
+	private int[] orderingVariation = new int[0];
+	/**
+	 * Position expected after the first two moves of the last principal variation, 
+	 * if it is reached, the rest of the variation orders the next search
+	 */
+	private long expectedKey = -1;
+	private int[] expectedVariation;
+	/**
+	 * Limits of the running search, aborted is set when one of them is reached, by any thread of the search
+	 */
+	private long maxNodes;
+	private long deadline;
+	private volatile boolean aborted;
+	private volatile boolean stopRequested;
+	/**
+	 * The future of the running asynchronous search
+	 */
+	private volatile CompletableFuture<SearchResult> runningSearch;
+	/**
+	 * Set while an asynchronous search runs, which always deepens iteratively to be stoppable
+	 */
+	private boolean asyncSearch;
+	/**
+	 * The limits are checked whenever the number of nodes has all these bits cleared
+	 */
+	private static final int STOP_CHECK_INTERVAL = 1023;
+	/**
+	 * Runs the asynchronous searches of all players
+	 */
+	private static final ExecutorService ASYNC_EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "ai-search");
+		t.setDaemon(true);
+		return t;
+	});
 	
 	/**
 	 * Constructor calling its superclass constructor 
@@ -25,6 +145,178 @@ public class AIPlayer extends Player {
 		this.depth = depth;
 	}
 	
+	/**
+	 * Copy Constructor
+	 * copies the piece counts and the depth, see Player(Player). The rest of the search configuration 
+	 * (transposition table, evaluation cache, solver, search mode, time manager, parallel search, deterministic seed) 
+	 * is not copied: the copies of Game(Game) only stand for the player on the copied board, 
+	 * the searches on them are run by the original player.
+	 * @param playerToCopy The player to be copied
+	 */
+	public AIPlayer(AIPlayer playerToCopy) {
+		super(playerToCopy);
+		this.depth = playerToCopy.depth;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Lets the search try to prove a forced win in tactical positions with the proof-number search
+	 * before the Alpha Beta search is started. Once a win is proven, the moves of the proven line
+	 * are played without any further search.
+	 * @param tableBits The table of the proof-number search holds 2^tableBits positions of 24 bytes each
+	 * @param maxNodes Maximum number of nodes of one proof attempt
+	 * @param maxMillis Maximum time of one proof attempt
+	 */
+	public void enableSolver(int tableBits, long maxNodes, long maxMillis) {
+		solver = new ProofNumberSearch(tableBits);
+		solverMaxNodes = maxNodes;
+		solverMaxMillis = maxMillis;
+	}
+	
+	/**
+	 * Gives the Alpha Beta search a transposition table, which stays filled between the moves
+	 * @param bits The table holds 2^bits positions, each taking 16 bytes
+	 */
+	public void enableTranspositionTable(int bits) {
+		table = new TranspositionTable(bits);
+	}
+	
+	/**
+	 * Lets the search remember the evaluation of leaf positions, which stays filled between the moves
+	 * @param bits The cache holds 2^bits positions, each taking 8 bytes
+	 */
+	public void enableEvalCache(int bits) {
+		evalCache = new EvalCache(bits);
+	}
+	
+	/**
+	 * Lets the search evaluate the leaves with a neural network instead of the hand-written evaluation
+	 * @param network The network or null to return to the hand-written evaluation
+	 */
+	public void enableNeuralEvaluation(NeuralNetwork network) {
+		neuralEvaluator = network == null ? null : new NeuralEvaluator(network);
+		//the cached scores stem from the other evaluation
+		if(evalCache != null) {
+			evalCache.clear();
+		}
+	}
+	
+	/**
+	 * Lets the search evaluate all leaves below a node of depth 1 at once instead of visiting them one by one,
+	 * see BatchEvaluator. The moves of such a node are taken in the order of its move picker,
+	 * so the scores and nodes are the same as without, only the leaves are evaluated faster
+	 * (see the batch configuration of SearchBenchmark). It applies to the hand-written evaluation only
+	 * and doesn't use the evaluation cache.
+	 * @param enabled Should the leaves be evaluated in batches?
+	 */
+	public void enableBatchEvaluation(boolean enabled) {
+		batchEvaluator = enabled ? new BatchEvaluator() : null;
+	}
+	
+	/**
+	 * @return The evaluation cache or null if disabled
+	 */
+	public EvalCache getEvalCache() {
+		return evalCache;
+	}
+	
+	/**
+	 * @return The transposition table or null if disabled
+	 */
+	public TranspositionTable getTranspositionTable() {
+		return table;
+	}
+	
+	/**
+	 * Selects the search algorithm. MTD(f) needs a transposition table, so a default one is created if none is enabled yet.
+	 * @param searchMode
+	 */
+	public void setSearchMode(SearchMode searchMode) {
+		if(searchMode == SearchMode.MTDF && table == null) {
+			enableTranspositionTable(DEFAULT_TABLE_BITS);
+		}
+		this.searchMode = searchMode;
+	}
+	
+	public SearchMode getSearchMode() {
+		return searchMode;
+	}
+	
+	/**
+	 * Sets the generator choosing among equally scored moves, e.g. a seeded one to replay a series of games
+	 * @param random The generator
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		this.random = random;
+	}
+	
+	/**
+	 * @return The generator choosing among equally scored moves, also the source of seeds for subclasses
+	 */
+	protected RandomGenerator getRandomGenerator() {
+		return random;
+	}
+	
+	/**
+	 * Makes every search reproducible: the same position, configuration and seed always yield the same move, 
+	 * score and node count, no matter which searches came before. The choice among equally scored moves is derived 
+	 * from the seed and the position, and nothing learned in earlier searches is kept (transposition table,
+	 * proven positions, expected variation). Searches limited by time are still not reproducible.
+	 * @param seed The seed of the choice among equally scored moves
+	 */
+	public void enableDeterministicMode(long seed) {
+		this.deterministic = true;
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+	}
+	
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+	
+	/**
+	 * Lets the Alpha Beta search write the explored trees, see SearchTreeWriter. 
+	 * The leaves are visited one by one while a tree is written, batch evaluation is suspended.
+	 * @param writer The writer or null to stop writing, the caller closes it
+	 */
+	public void enableTreeDump(SearchTreeWriter writer) {
+		this.treeWriter = writer;
+	}
+	
+	/**
+	 * Lets the player search its moves within the time of a whole game instead of always to the full depth,
+	 * see TimeManager. It applies to search(Game, Player) and searchForBestMove, the depth still limits the search.
+	 * @param timeManager The time manager or null to search to the full depth
+	 */
+	public void setTimeManager(TimeManager timeManager) {
+		this.timeManager = timeManager;
+	}
+	
+	public TimeManager getTimeManager() {
+		return timeManager;
+	}
+	
+	/**
+	 * Lets the Alpha Beta search use several threads, see ParallelSearch. It is meant for long and deep searches,
+	 * e.g. the analysis of placing pieces positions, and applies to the Alpha Beta mode with the hand-written evaluation.
+	 * The iterations search the root moves with a full window and report only the best move, 
+	 * equally scored moves are not chosen at random and the search isn't deterministic.
+	 * @param threads Number of threads, 1 to search with one
+	 */
+	public void enableParallelSearch(int threads) {
+		parallelSearch = threads > 1 ? new ParallelSearch(this, threads) : null;
+	}
+	
+	/**
+	 * @return Number of nodes visited by the last search
+	 */
+	public long getNodes() {
+		return stack == null ? 0 : stack.nodes;
+	}
+	
 	/**
 	 * Outer method of the Alpha Beta Pruning Search. It identifies the best move by going 
 	 * one level deeper in the tree and look for the best rated move
@@ -32,57 +324,710 @@ public class AIPlayer extends Player {
 	 * @return A random move of the best rated moves (if there is more than one best moves) or the single best move
 	 */
 	public Move searchForBestMove(Game game) {
-		List<Move> moves = game.generatePossibleMoves(game.getAIPlayer());
+		return search(game, game.getAIPlayer()).getMove();
+	}
+	
+	/**
+	 * Searches the best move for an arbitrary player of the game, 
+	 * e.g. to analyze positions of both sides of a recorded game. If a time manager is set, the move is timed by it.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @return The best move together with its score, the move is null if player has no moves
+	 */
+	public SearchResult search(Game game, Player player) {
+		if(timeManager == null) {
+			return search(game, player, SearchLimits.ofDepth(depth), null);
+		}
+		timeManager.startMove(game, player, game.getLegalMoves(player).size());
+		managingTime = true;
+		try {
+			return search(game, player, new SearchLimits(depth, SearchLimits.UNLIMITED, timeManager.getMaximumMillis()), null);
+		}
+		finally {
+			managingTime = false;
+			timeManager.endMove();
+		}
+	}
+	
+	/**
+	 * Searches the best move within the given limits. If the search can be stopped before reaching the depth 
+	 * (by the limits, by stop() or because a listener wants intermediate results), it deepens iteratively
+	 * and returns the result of the deepest completed iteration.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @param limits The limits of the search
+	 * @param onIteration Called with the result of every completed iteration, may be null
+	 * @return The best move together with its score, the move is null if player has no moves
+	 */
+	public SearchResult search(Game game, Player player, SearchLimits limits, Consumer<SearchResult> onIteration) {
+		//the neural evaluation follows the moves of the searched game, which may be a copy
+		if(neuralEvaluator != null) {
+			neuralEvaluator.attach(game);
+		}
+		try {
+			return searchIteratively(game, player, limits, onIteration);
+		}
+		finally {
+			if(neuralEvaluator != null) {
+				neuralEvaluator.detach();
+			}
+		}
+	}
+	
+	/**
+	 * Runs a search and reports it to the flight recorder, see SearchEvent
+	 */
+	private SearchResult searchIteratively(Game game, Player player, SearchLimits limits, Consumer<SearchResult> onIteration) {
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		if(deterministic) {
+			//nothing of earlier searches may influence this one
+			if(table != null) {
+				table.clear();
+			}
+			if(solver != null) {
+				solver.clear();
+			}
+			expectedVariation = null;
+		}
+		long probes = table == null ? 0 : table.getProbes(), hits = table == null ? 0 : table.getHits();
+		writingTree = treeWriter != null && treeWriter.beginSearch(game.getPositionKey(player), limits.getDepth());
+		SearchResult result;
+		try {
+			result = searchIterations(game, player, limits, onIteration);
+		}
+		finally {
+			if(writingTree) {
+				treeWriter.endSearch();
+				writingTree = false;
+			}
+		}
+		if(event.shouldCommit()) {
+			event.phase = player.getGamePhase().toString();
+			event.mode = searchMode.toString();
+			event.depth = result.getDepth();
+			event.nodes = result.getNodes();
+			event.score = result.getScore();
+			event.move = result.getMove() == null ? null : MoveNotation.format(result.getMove().toCode());
+			event.aborted = aborted;
+			event.commit();
+		}
+		if(table != null) {
+			TranspositionTableEvent tableEvent = new TranspositionTableEvent();
+			if(tableEvent.shouldCommit()) {
+				tableEvent.probes = table.getProbes() - probes;
+				tableEvent.hits = table.getHits() - hits;
+				tableEvent.commit();
+			}
+		}
+		return result;
+	}
+	
+	private SearchResult searchIterations(Game game, Player player, SearchLimits limits, Consumer<SearchResult> onIteration) {
+		startSearch();
+		stack.clearKillers();
+		clearStopRequest();
+		maxNodes = limits.getMaxNodes();
+		deadline = limits.getDeadline(System.nanoTime());
+		if(solver != null) {
+			//continue a line proven before or try to prove a new one
+			Move provenMove = solver.findProvenMove(game, player);
+			if(provenMove == null && ProofNumberSearch.isTactical(game, player)
+					&& solver.solve(game, player, player, solverMaxNodes, solverMaxMillis) == ProofNumberSearch.Result.PROVEN) {
+				provenMove = solver.findProvenMove(game, player);
+			}
+			if(provenMove != null) {
+				SearchResult result = new SearchResult(provenMove, PROVEN_WIN_SCORE, limits.getDepth(), solver.getNodes());
+				if(onIteration != null) {
+					onIteration.accept(result);
+				}
+				return result;
+			}
+		}
+		//the cached list is shared with the game loop, the root reorders a copy
+		List<Move> moves = new ArrayList<>(game.getLegalMoves(player));
+		if(moves.isEmpty()) {
+			return new SearchResult(null, Integer.MIN_VALUE + 1, limits.getDepth(), stack.nodes);
+		}
 		//presorts the moves to speed up the Alpha Beta search
 		Collections.sort(moves);
+		//continue the line expected at the last turn, if the opponent answered as expected
+		if(expectedVariation != null && game.getPositionKey(player) == expectedKey) {
+			orderingVariation = expectedVariation;
+			moveToFront(moves, orderingVariation[0]);
+		}
+		else {
+			orderingVariation = new int[0];
+		}
 		
+		boolean iterative = searchMode == SearchMode.MTDF || limits.isInterruptible() || onIteration != null || asyncSearch;
+		SearchResult result = null;
+		int maxDepth = Math.min(limits.getDepth(), MAX_PLY);
+		for(int iterationDepth = iterative ? 1 : maxDepth; iterationDepth <= maxDepth; iterationDepth++) {
+			SearchResult iteration = searchMode == SearchMode.MTDF 
+					? searchMTDF(game, player, moves, iterationDepth, result == null ? 0 : result.getScore()) 
+					: parallelSearch != null && neuralEvaluator == null && !writingTree 
+					? searchParallel(game, player, moves, iterationDepth)
+					: searchAllMoves(game, player, moves, iterationDepth);
+			if(aborted) {
+				//the results of an incomplete iteration are unreliable
+				break;
+			}
+			result = iteration;
+			//the principal variation of an iteration is searched first in the next one
+			moves.remove(result.getMove());
+			moves.add(0, result.getMove());
+			orderingVariation = result.getPrincipalVariation();
+			IterationEvent event = new IterationEvent();
+			if(event.shouldCommit()) {
+				event.depth = iterationDepth;
+				event.nodes = stack.nodes;
+				event.score = result.getScore();
+				event.move = MoveNotation.format(result.getMove().toCode());
+				event.commit();
+			}
+			if(onIteration != null) {
+				onIteration.accept(result);
+			}
+			if(managingTime && !timeManager.continueIteration(result, stack.nodes)) {
+				break;
+			}
+		}
+		if(result == null) {
+			//stopped before the first iteration completed, so only the presorting is known
+			result = new SearchResult(moves.get(0), 0, 0, stack.nodes);
+		}
+		rememberExpectedVariation(game, player, result.getPrincipalVariation());
+		return result;
+	}
+	
+	/**
+	 * Resets the state of the sequential search for a new search
+	 */
+	private void startSearch() {
+		if(stack == null) {
+			stack = new SearchStack(null);
+		}
+		stack.nodes = 0;
+		aborted = false;
+		if(parallelSearch != null) {
+			parallelSearch.newSearch();
+		}
+	}
+	
+	/**
+	 * Searches an iteration with several threads
+	 */
+	private SearchResult searchParallel(Game game, Player player, List<Move> moves, int iterationDepth) {
+		SearchResult result = parallelSearch.search(game, player, moves, iterationDepth, deadline, maxNodes - stack.nodes);
+		stack.nodes += parallelSearch.getNodes();
+		//like the other iterations, the result counts the nodes of the whole search
+		return result == null ? null : new SearchResult(result.getMove(), result.getScore(), iterationDepth, stack.nodes, result.getPrincipalVariation());
+	}
+	
+	/**
+	 * Looks for a move leaving the opponent without any move, see MoveGenerator.blockadeMove.
+	 * Only bit masks are examined, unless such a move is found.
+	 * @param game The game where everything takes place
+	 * @param player The player in turn
+	 * @return The code of the move or -1 if none was found
+	 */
+	private static int findBlockade(Game game, Player player) {
+		Player opponent = game.getOtherPlayer(player);
+		if(opponent.getGamePhase() != GamePhase.MOVING_PIECES) {
+			return -1;
+		}
+		int code = MoveGenerator.blockadeMove(player.getGamePhase(), player.getOccupiedPositions(), opponent.getOccupiedPositions());
+		//the position after the move is lost for the opponent, unless the search rates it as draw first
+		return code >= 0 && !isDrawnAfter(game, player, code) ? code : -1;
+	}
+	
+	/**
+	 * @return Does the search rate the position after the move as draw?
+	 */
+	private static boolean isDrawnAfter(Game game, Player player, int code) {
+		game.applyMoveCode(code, player);
+		boolean draw = game.isRepetition() || game.getMovesWithoutMill() >= game.getDrawRules().getMovesWithoutMill();
+		game.undoMoveCode(code, player);
+		return draw;
+	}
+	
+	/**
+	 * Remembers the position after the first two moves of the variation, to reuse the rest of it in the next turn
+	 */
+	private void rememberExpectedVariation(Game game, Player player, int[] variation) {
+		expectedVariation = null;
+		if(variation.length > 2) {
+			Player opponent = game.getOtherPlayer(player);
+			game.applyMoveCode(variation[0], player);
+			game.applyMoveCode(variation[1], opponent);
+			expectedKey = game.getPositionKey(player);
+			game.undoMoveCode(variation[1], opponent);
+			game.undoMoveCode(variation[0], player);
+			expectedVariation = Arrays.copyOfRange(variation, 2, variation.length);
+		}
+	}
+	
+	/**
+	 * Moves the move with the given code to the front of the list, if the list contains it
+	 * @return Was the move found?
+	 */
+	private static boolean moveToFront(List<Move> moves, int code) {
+		for(int i = 0; i < moves.size(); i++) {
+			if(moves.get(i).toCode() == code) {
+				moves.add(0, moves.remove(i));
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Prepares the search of a root move: it follows the ordering variation if it is the first move of it
+	 */
+	private void enterRootMove(Move move) {
+		stack.followingVariation = isOnOrderingVariation(move.toCode());
+		stack.path[0] = move.toCode();
+	}
+	
+	/**
+	 * @return Is the root move the first move of the ordering variation?
+	 */
+	boolean isOnOrderingVariation(int code) {
+		return orderingVariation.length > 0 && code == orderingVariation[0];
+	}
+	
+	/**
+	 * @return The principal variation of a root move searched last, i.e. the move followed by the line of ply 1
+	 */
+	private int[] rootVariation(Move move) {
+		return variation(move.toCode(), stack.pvTable[1], stack.pvLength[1]);
+	}
+	
+	/**
+	 * @return The move followed by the first moves of the line
+	 */
+	static int[] variation(int code, int[] line, int length) {
+		int[] variation = new int[length + 1];
+		variation[0] = code;
+		System.arraycopy(line, 0, variation, 1, length);
+		return variation;
+	}
+	
+	/**
+	 * Starts a search in the background, which works on a copy of the game, so the game may be used meanwhile.
+	 * The search can be cancelled by cancelling the future, which stops it within a few thousand nodes. 
+	 * Searches of the same player are executed one after the other.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @param limits The limits of the search
+	 * @param onIteration Called with the result of every completed iteration, may be null. 
+	 * It is called by the searching thread, so it should return quickly.
+	 * @return The future result, its moves refer to the board of game
+	 */
+	public CompletableFuture<SearchResult> searchAsync(Game game, Player player, SearchLimits limits, Consumer<SearchResult> onIteration) {
+		Game copy = new Game(game);
+		Player copyPlayer = copy.getCorrespondingPlayer(game, player);
+		CompletableFuture<SearchResult> future = new CompletableFuture<>();
+		future.whenComplete((result, x) -> {
+			if(future.isCancelled() && runningSearch == future) {
+				stop();
+			}
+		});
+		ASYNC_EXECUTOR.execute(() -> {
+			synchronized(this) {
+				stopRequested = false;
+				runningSearch = future;
+				//cancelled while waiting for the previous search
+				if(future.isDone()) {
+					runningSearch = null;
+					return;
+				}
+				asyncSearch = true;
+				try {
+					Consumer<SearchResult> listener = onIteration == null ? null : r -> onIteration.accept(toBoardOf(game, r));
+					future.complete(toBoardOf(game, search(copy, copyPlayer, limits, listener)));
+				}
+				catch(RuntimeException x) {
+					future.completeExceptionally(x);
+				}
+				finally {
+					asyncSearch = false;
+					runningSearch = null;
+				}
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Stops the running search, which returns the result of its last completed iteration
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+	
+	/**
+	 * Forgets a stop request of an earlier synchronous search. An asynchronous search keeps it,
+	 * since it may have been cancelled right before it started.
+	 */
+	protected void clearStopRequest() {
+		if(!asyncSearch) {
+			stopRequested = false;
+		}
+	}
+	
+	/**
+	 * @return Was the running search asked to stop?
+	 */
+	protected boolean isStopRequested() {
+		return stopRequested;
+	}
+	
+	/**
+	 * Translates a result found on a copy of the game into a result with moves of the original board
+	 */
+	private static SearchResult toBoardOf(Game game, SearchResult result) {
+		Move move = result.getMove() == null ? null : Move.fromCode(result.getMove().toCode(), game.getBoard());
+		return new SearchResult(move, result.getScore(), result.getDepth(), result.getNodes(), result.getPrincipalVariation());
+	}
+	
+	/**
+	 * Searches the k best moves, each with its exact score and its principal variation, e.g. for hints or analysis.
+	 * All lines are searched in one pass: a move only needs an exact score if it beats the k-th best line so far,
+	 * so it is searched with the score of that line as alpha and all other moves fail low cheaply.
+	 * The lines share the transposition table (a default one is created if none is enabled yet) and are searched
+	 * with iterative deepening, so each iteration starts with the lines of the previous one.
+	 * The principal variations are collected like in the normal search, see pvTable.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @param k The number of lines
+	 * @return The lines ordered by their score, at most k and fewer if player has fewer moves
+	 */
+	public List<SearchResult> searchMultiPV(Game game, Player player, int k) {
+		if(k < 1) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		if(neuralEvaluator != null) {
+			neuralEvaluator.attach(game);
+		}
+		try {
+			return searchMultiPVLines(game, player, k);
+		}
+		finally {
+			if(neuralEvaluator != null) {
+				neuralEvaluator.detach();
+			}
+		}
+	}
+	
+	private List<SearchResult> searchMultiPVLines(Game game, Player player, int k) {
+		if(table == null) {
+			enableTranspositionTable(DEFAULT_TABLE_BITS);
+		}
+		startSearch();
+		clearStopRequest();
+		maxNodes = SearchLimits.UNLIMITED;
+		deadline = Long.MAX_VALUE;
+		List<Move> moves = new ArrayList<>(game.getLegalMoves(player));
+		Collections.sort(moves);
+		List<SearchResult> lines = new ArrayList<>();
+		orderingVariation = new int[0];
+		for(int iterationDepth = 1; iterationDepth <= Math.min(depth, MAX_PLY) && !moves.isEmpty(); iterationDepth++) {
+			List<SearchResult> iteration = searchLines(game, player, moves, iterationDepth, Math.min(k, moves.size()));
+			if(aborted) {
+				break;
+			}
+			lines = iteration;
+			if(!lines.isEmpty()) {
+				orderingVariation = lines.get(0).getPrincipalVariation();
+			}
+			for(int i = lines.size() - 1; i >= 0; i--) {
+				moves.remove(lines.get(i).getMove());
+				moves.add(0, lines.get(i).getMove());
+			}
+		}
+		return lines;
+	}
+	
+	/**
+	 * One iteration of the multi-PV search
+	 * @return The k best lines ordered by their score
+	 */
+	private List<SearchResult> searchLines(Game game, Player player, List<Move> moves, int iterationDepth, int k) {
+		List<SearchResult> lines = new ArrayList<>(k + 1);
+		int searched = 0;
+		for(Move move : moves) {
+			//scores not above alpha are only upper bounds, which is enough to know that the move isn't among the k best
+			int alpha = lines.size() < k ? Integer.MIN_VALUE + 1 : lines.get(k - 1).getScore();
+			enterRootMove(move);
+			game.applyMove(move, player);
+			int value = -alphaBeta(stack, game, game.getOtherPlayer(player), iterationDepth - 1, 1, Integer.MIN_VALUE + 1, -alpha);
+			int[] pv = value > alpha || lines.size() < k ? rootVariation(move) : null;
+			game.undoMove(move, player);
+			if(aborted) {
+				break;
+			}
+			searched++;
+			if(pv != null) {
+				int i = lines.size();
+				while(i > 0 && lines.get(i - 1).getScore() < value) {
+					i--;
+				}
+				lines.add(i, new SearchResult(move, value, iterationDepth, stack.nodes, pv));
+				if(lines.size() > k) {
+					lines.remove(k);
+				}
+			}
+		}
+		if(writingTree) {
+			treeWriter.writeRoot(iterationDepth, Integer.MIN_VALUE + 1, Integer.MAX_VALUE, lines.isEmpty() ? 0 : lines.get(0).getScore(), 
+					aborted ? SearchTreeWriter.ABORTED : 0, searched, -1, lines.isEmpty() ? -1 : moves.indexOf(lines.get(0).getMove()));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Searches every move at the root with a full window, so that all equally rated best moves are known
+	 * @return A random move of the best rated moves 
+	 */
+	private SearchResult searchAllMoves(Game game, Player player, List<Move> moves, int iterationDepth) {
 		int value, bestValue = Integer.MIN_VALUE + 1;
 		List<Move> bestMoves = new ArrayList<>();
+		List<int[]> bestVariations = new ArrayList<>();
+		int searched = 0, bestIndex = -1;
 
 		//look for the best moves and add them into a list 
 		for(Move move : moves) {
-			game.applyMove(move, game.getAIPlayer());
+			enterRootMove(move);
+			game.applyMove(move, player);
 			//add one to MIN_VALUE, because Integer has not a symmetric range 
 			//had it wrong at first, it took a long time to find out the reason for the misbehavior caused by this
-			value = -alphaBeta(game, game.getHumanPlayer(), depth-1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
-			game.undoMove(move, game.getAIPlayer());
+			value = -alphaBeta(stack, game, game.getOtherPlayer(player), iterationDepth-1, 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+			game.undoMove(move, player);
+			if(aborted) {
+				break;
+			}
+			searched++;
 			
 			//only keep the best moves in the List
 			//if new better move is found, clear the list and insert it 
 			if(value > bestValue) {
 				bestValue = value;
+				bestIndex = searched - 1;
 				bestMoves.clear();
+				bestVariations.clear();
 				bestMoves.add(move);
+				bestVariations.add(rootVariation(move));
 			}
 			else if(value == bestValue) {
 				bestMoves.add(move);
+				bestVariations.add(rootVariation(move));
 			}
 	
 		}
+		if(writingTree) {
+			treeWriter.writeRoot(iterationDepth, Integer.MIN_VALUE + 1, Integer.MAX_VALUE, bestValue, 
+					aborted ? SearchTreeWriter.ABORTED : 0, searched, -1, bestIndex);
+		}
+		if(bestMoves.isEmpty()) {
+			return null;
+		}
 		//retrieve a random item of the list to ensure variety of the game
-		Random r = new Random();
-		int randIndex = r.nextInt(bestMoves.size());
-		return bestMoves.get(randIndex);
+		int randIndex = chooseIndex(game, player, bestMoves.size());
+		return new SearchResult(bestMoves.get(randIndex), bestValue, iterationDepth, stack.nodes, bestVariations.get(randIndex));
+	}
+	
+	/**
+	 * Chooses one of several equally scored moves
+	 * @param size Number of moves, at least one
+	 * @return The index of the chosen move
+	 */
+	private int chooseIndex(Game game, Player player, int size) {
+		if(size == 1) {
+			return 0;
+		}
+		if(!deterministic) {
+			return random.nextInt(size);
+		}
+		long h = (seed ^ game.getPositionKey(player)) * 0x9E3779B97F4A7C15L;
+		return (int) (((h ^ h >>> 29) >>> 1) % size);
+	}
+	
+	/**
+	 * One iteration of MTD(f). It narrows the minimax value down by zero window searches,
+	 * starting with the value of the previous iteration as first guess.
+	 * Further move ordering comes from the transposition table.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @param moves The presorted moves of player, at least one
+	 * @param iterationDepth The depth of the iteration
+	 * @param guess The value of the previous iteration
+	 * @return The best move with its minimax value
+	 */
+	private SearchResult searchMTDF(Game game, Player player, List<Move> moves, int iterationDepth, int guess) {
+		Move bestMove = moves.get(0);
+		int[] bestVariation = {bestMove.toCode()};
+		int lowerBound = Integer.MIN_VALUE + 1, upperBound = Integer.MAX_VALUE;
+		while(lowerBound < upperBound && !aborted) {
+			int beta = guess == lowerBound ? guess + 1 : guess;
+			guess = searchRoot(game, player, moves, iterationDepth, beta - 1, beta);
+			if(guess < beta) {
+				upperBound = guess;
+			}
+			else {
+				//only a search failing high proves that its best move reaches the value
+				lowerBound = guess;
+				bestMove = rootBestMove;
+				bestVariation = rootBestVariation;
+			}
+		}
+		return new SearchResult(bestMove, guess, iterationDepth, stack.nodes, bestVariation);
+	}
+	
+	/**
+	 * Alpha Beta search of the root node, which remembers its best move in rootBestMove
+	 * @return The fail-soft value of the root
+	 */
+	private int searchRoot(Game game, Player player, List<Move> moves, int remainingDepth, int alpha, int beta) {
+		int bestValue = Integer.MIN_VALUE + 1, searched = 0, bestIndex = -1;
+		rootBestMove = null;
+		for(Move move : moves) {
+			enterRootMove(move);
+			game.applyMove(move, player);
+			int value = -alphaBeta(stack, game, game.getOtherPlayer(player), remainingDepth - 1, 1, -beta, -Math.max(alpha, bestValue));
+			game.undoMove(move, player);
+			if(aborted) {
+				break;
+			}
+			searched++;
+			if(value > bestValue) {
+				bestValue = value;
+				bestIndex = searched - 1;
+				rootBestMove = move;
+				rootBestVariation = rootVariation(move);
+				if(bestValue >= beta) {
+					break;
+				}
+			}
+		}
+		if(writingTree) {
+			boolean cutoff = bestValue >= beta;
+			treeWriter.writeRoot(remainingDepth, alpha, beta, bestValue, (aborted ? SearchTreeWriter.ABORTED : 0) 
+					| (cutoff ? SearchTreeWriter.CUTOFF : 0), searched, cutoff ? bestIndex : -1, bestIndex);
+		}
+		return bestValue;
+	}
+	
+	/**
+	 * Stops the search if it was asked to or a limit is exceeded.
+	 * Called every few thousand nodes only, so polling the flag and the clock costs nearly nothing.
+	 * @param s The stack of the thread, the parallel search checks its own limits
+	 */
+	private void checkLimits(SearchStack s) {
+		if(s.parallel != null) {
+			s.parallel.checkLimits(s);
+		}
+		else if(stopRequested || s.nodes >= maxNodes || System.nanoTime() >= deadline) {
+			aborted = true;
+		}
+	}
+	
+	/**
+	 * Stops the running search, called by the threads of the parallel search
+	 */
+	void abortSearch() {
+		aborted = true;
+	}
+	
+	/**
+	 * @return Was the running search stopped?
+	 */
+	boolean isAborted() {
+		return aborted;
 	}
 	
 	/**
 	 * The actual Alpha Beta Pruning search. 
 	 * The algorithm is implemented in a Negamax manner.
+	 * The sequential and the parallel search both run it, each thread with its own stack.
+	 * @param s The state of the searching thread
 	 * @param game The game where everything takes places
 	 * @param player The player of the current depth
 	 * @param remainingDepth
+	 * @param ply The distance to the root, the row of the principal variation table of this node
 	 * @param alpha 
 	 * @param beta
-	 * @return The recent alpha value.
+	 * @return The value of the best move, an upper bound if it is not above alpha and a lower bound if it is not below beta,
+	 * meaningless if the search was stopped or the split point of the thread was cut off
 	 * @see //https://en.wikipedia.org/wiki/Negamax#Negamax_with_alpha_beta_pruning
 	 */
-	private int alphaBeta(Game game, Player player, int remainingDepth, int alpha, int beta) {
-		
+	int alphaBeta(SearchStack s, Game game, Player player, int remainingDepth, int ply, int alpha, int beta) {
+		if(!writingTree) {
+			return searchNode(s, game, player, remainingDepth, ply, alpha, beta);
+		}
+		s.treeFlags[ply] = 0;
+		s.treeSearched[ply] = 0;
+		s.treeCutoffs[ply] = -1;
+		s.treeBest[ply] = -1;
+		int value = searchNode(s, game, player, remainingDepth, ply, alpha, beta);
+		int flags = s.treeFlags[ply] | (aborted ? SearchTreeWriter.ABORTED : 0) | (s.treeCutoffs[ply] >= 0 ? SearchTreeWriter.CUTOFF : 0);
+		if(remainingDepth == 0 && (flags & (SearchTreeWriter.DRAW | SearchTreeWriter.ABORTED)) == 0) {
+			flags |= SearchTreeWriter.LEAF;
+		}
+		treeWriter.writeNode(ply, remainingDepth, s.path[ply - 1], alpha, beta, value, flags, s.treeSearched[ply], s.treeCutoffs[ply], s.treeBest[ply]);
+		return value;
+	}
+	
+	/**
+	 * The node of alphaBeta, which only adds the writing of the tree
+	 */
+	private int searchNode(SearchStack s, Game game, Player player, int remainingDepth, int ply, int alpha, int beta) {
+		s.nodes++;
+		s.pvLength[ply] = 0;
+		boolean onVariation = s.followingVariation;
+		s.followingVariation = false;
+		if((s.nodes & STOP_CHECK_INTERVAL) == 0) {
+			checkLimits(s);
+		}
+		if(aborted || s.isCutOff()) {
+			return 0;
+		}
+		//a repeated position leads to the same positions again, so the cycle isn't searched any further but rated as draw
+		if(game.isRepetition() || game.getMovesWithoutMill() >= game.getDrawRules().getMovesWithoutMill()) {
+			s.treeFlags[ply] = SearchTreeWriter.DRAW;
+			return DRAW_SCORE;
+		}
 		if(remainingDepth == 0)
-			return evaluate(game, player);
-		List<Move> possibleMoves = game.generatePossibleMoves(player);
-		//Presorts the moves to speed up the Alpha Beta search
-		Collections.sort(possibleMoves);
+			return evaluateCached(game, player);
+		
+		long key = 0;
+		int ttMove = -1;
+		if(table != null) {
+			key = game.getPositionKey(player);
+			long entry = table.probe(key);
+			if(entry >= 0) {
+				ttMove = TranspositionTable.move(entry);
+				//the stored value can only be used if it was searched at least as deep and its bound suffices for the window
+				if(TranspositionTable.depth(entry) >= remainingDepth) {
+					int value = TranspositionTable.value(entry);
+					int bound = TranspositionTable.bound(entry);
+					if(bound == TranspositionTable.EXACT 
+							|| bound == TranspositionTable.LOWER_BOUND && value >= beta
+							|| bound == TranspositionTable.UPPER_BOUND && value <= alpha) {
+						s.treeFlags[ply] = SearchTreeWriter.TABLE_HIT;
+						return value;
+					}
+				}
+			}
+		}
+		
+		//the moves are picked in stages, so a node cut off by an early move never generates the rest.
+		//at depth 1 with batch evaluation all moves are needed at once, they are taken from the picker in its order.
+		//the batch evaluator belongs to the sequential search
+		boolean batch = remainingDepth == 1 && batchEvaluator != null && neuralEvaluator == null && !writingTree && s.parallel == null;
+		MovePicker picker = s.pickers[ply];
+		picker.reset(game, player);
 		
 		/*
 		 * If the recent move caused a game over, rate this move very significantly.
@@ -93,26 +1038,195 @@ public class AIPlayer extends Player {
 		 * Or, what is even worse, if it knows it looses within the next magnitude_of_depth of moves, provided that the human player plays 
 		 * <b> perfect </b>. For a detailed explanation: http://neverstopbuilding.com/minimax
 		 */
-		if(game.hasLost(player, possibleMoves)) {
+		if(player.getNumOfRemainingPieces() <= 2 || !picker.hasMoves()) {
+			s.treeFlags[ply] = SearchTreeWriter.TERMINAL;
 			return -1000-remainingDepth*10;
 		}
 		else if(game.hasLost(game.getOtherPlayer(player))) {
+			s.treeFlags[ply] = SearchTreeWriter.TERMINAL;
 			return 1000+remainingDepth*10;
 		}
-
+		//a blockade wins at the next ply, which no other move can beat, so they aren't searched.
+		//at depth 1 the position after it would be evaluated instead, so the shortcut would change the value
+		if(remainingDepth >= 2) {
+			int blockade = findBlockade(game, player);
+			if(blockade >= 0) {
+				int value = 1000+(remainingDepth-1)*10;
+				s.pvTable[ply][0] = blockade;
+				s.pvLength[ply] = 1;
+				if(table != null) {
+					table.store(key, value, remainingDepth, TranspositionTable.EXACT, blockade);
+				}
+				s.treeFlags[ply] = SearchTreeWriter.TERMINAL;
+				return value;
+			}
+		}
 		
-		for(Move m: possibleMoves) {
-			game.applyMove(m, player);
-			int value = -alphaBeta(game, game.getOtherPlayer(player), remainingDepth-1,-beta, -alpha);
-			game.undoMove(m, player);
+		//the best move of an earlier search of this position is tried first,
+		//unless the node lies on the principal variation of the previous iteration, which is even more reliable
+		onVariation = onVariation && ply < orderingVariation.length && picker.contains(orderingVariation[ply]);
+		picker.setHashMoves(onVariation ? orderingVariation[ply] : ttMove, onVariation ? ttMove : -1);
+		picker.setKillerMoves(s.killers[ply]);
+
+		//fail-soft: the best value is returned even if it lies outside the window, 
+		//this gives tighter bounds for the transposition table and doesn't change which nodes are visited
+		int leaves = 0;
+		if(batch) {
+			leaves = s.pickLeaves(picker);
+			evaluateLeaves(game, player, s.leaves, leaves);
+		}
+		int alphaOrig = alpha, bestValue = Integer.MIN_VALUE + 1, bestMove = -1;
+		for(int i = 0; ; i++) {
+			if(i == 1 && s.parallel != null && s.parallel.shouldSplit(remainingDepth)) {
+				//the eldest brother didn't cut off, the others are searched in parallel
+				ParallelSearch.SplitPoint sp = s.parallel.split(s, game, player, picker, remainingDepth, ply, alpha, beta, bestValue, bestMove);
+				if(aborted || s.isCutOff()) {
+					return 0;
+				}
+				if(sp != null && sp.bestMove != bestMove) {
+					bestValue = sp.bestValue;
+					bestMove = sp.bestMove;
+					if(bestValue > alpha) {
+						System.arraycopy(sp.variation, 0, s.pvTable[ply], 0, sp.variationLength);
+						s.pvLength[ply] = sp.variationLength;
+					}
+				}
+				if(sp != null && sp.cutoff) {
+					s.storeKiller(ply, bestMove);
+				}
+				break;
+			}
+			int code;
+			if(batch) {
+				if(i == leaves) {
+					break;
+				}
+				code = s.leaves[i];
+			}
+			else if((code = picker.next()) < 0) {
+				break;
+			}
+			int value;
+			if(batch) {
+				//account the leaf like a visit
+				s.nodes++;
+				if((s.nodes & STOP_CHECK_INTERVAL) == 0) {
+					checkLimits(s);
+				}
+				s.pvLength[ply + 1] = 0;
+				value = -batchEvaluator.score(i);
+			}
+			else {
+				//only the first move continues the variation
+				s.followingVariation = onVariation;
+				onVariation = false;
+				s.path[ply] = code;
+				game.applyMoveCode(code, player);
+				value = -alphaBeta(s, game, game.getOtherPlayer(player), remainingDepth-1, ply+1, -beta, -alpha);
+				game.undoMoveCode(code, player);
+			}
+			if(aborted || s.isCutOff()) {
+				//the values of a stopped search are meaningless, so nothing is stored
+				return 0;
+			}
+			s.treeSearched[ply] = i + 1;
+			if(value > bestValue) {
+				bestValue = value;
+				bestMove = code;
+				s.treeBest[ply] = i;
+			}
 			if(value > alpha) {
 				alpha = value;
+				//the line of this node is the move followed by the line of the child
+				s.pvTable[ply][0] = code;
+				System.arraycopy(s.pvTable[ply + 1], 0, s.pvTable[ply], 1, s.pvLength[ply + 1]);
+				s.pvLength[ply] = s.pvLength[ply + 1] + 1;
 			}
 			if(alpha >= beta) {
+				s.storeKiller(ply, code);
+				s.treeCutoffs[ply] = i;
 				break;
 			}
 		}
-		return alpha;
+		if(table != null) {
+			int bound = bestValue <= alphaOrig ? TranspositionTable.UPPER_BOUND 
+					: bestValue >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+			table.store(key, bestValue, remainingDepth, bound, bestMove);
+		}
+		return bestValue;
+	}
+
+	/**
+	 * Gathers the positions after the moves as bitboards and evaluates them at once.
+	 * Positions the search treats as draw get the draw score.
+	 * @param game The game where everything takes place
+	 * @param player The player in turn at the node of depth 1
+	 * @param moves The codes of the moves of player in the order they are searched
+	 * @param count The number of moves
+	 */
+	private void evaluateLeaves(Game game, Player player, int[] moves, int count) {
+		Player opponent = game.getOtherPlayer(player);
+		boolean human = player == game.getHumanPlayer();
+		GamePhase opponentPhase = opponent.getGamePhase();
+		GamePhase opponentPhaseAfterMill = opponent.getNumOfRemainingPieces() - 1 > 3 || opponentPhase == GamePhase.PLACING_PIECES 
+				? opponentPhase : GamePhase.FLYING_PIECES;
+		batchEvaluator.clear();
+		for(int i = 0; i < count; i++) {
+			int code = moves[i];
+			int source = Move.sourceOf(code), toRemove = Move.pieceToRemoveOf(code);
+			int moved = player.getOccupiedPositions() | 1 << Move.destinationOf(code);
+			if(source != Move.NO_POSITION) {
+				moved &= ~(1 << source);
+			}
+			int remaining = opponent.getOccupiedPositions();
+			if(toRemove != Move.NO_POSITION) {
+				remaining &= ~(1 << toRemove);
+				batchEvaluator.add(remaining, moved, opponent.getNumOfRemainingPieces() - 1, player.getNumOfRemainingPieces(), opponentPhaseAfterMill);
+			}
+			else {
+				batchEvaluator.add(remaining, moved, opponent.getNumOfRemainingPieces(), player.getNumOfRemainingPieces(), opponentPhase);
+			}
+		}
+		batchEvaluator.evaluateAll();
+		//only moves without placement and mill can lead to a draw
+		for(int i = 0; i < count; i++) {
+			int code = moves[i];
+			if(Move.sourceOf(code) != Move.NO_POSITION && Move.pieceToRemoveOf(code) == Move.NO_POSITION) {
+				int moved = player.getOccupiedPositions() & ~(1 << Move.sourceOf(code)) | 1 << Move.destinationOf(code);
+				long key = human 
+						? PositionCodec.encode(moved, opponent.getOccupiedPositions(), true, player.getNumOfPlacedPieces(), opponent.getNumOfPlacedPieces())
+						: PositionCodec.encode(opponent.getOccupiedPositions(), moved, false, opponent.getNumOfPlacedPieces(), player.getNumOfPlacedPieces());
+				if(game.isDrawnAfterReversibleMove(key)) {
+					batchEvaluator.setScore(i, DRAW_SCORE);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Evaluation of a leaf node by the neural network or the hand-written evaluation,
+	 * looked up in the evaluation cache first if it is enabled
+	 * @param game The game where everything takes place
+	 * @param player The player at the deepest level of the search tree
+	 * @return The score indicating how good the game situation is for player
+	 */
+	private int evaluateCached(Game game, Player player) {
+		if(evalCache == null) {
+			return evaluateLeaf(game, player);
+		}
+		//the key contains the player in turn, so the score of player is well defined by it
+		long key = game.getPositionKey(player);
+		long cached = evalCache.probe(key);
+		if(cached != EvalCache.MISS) {
+			return (int) cached;
+		}
+		int score = evaluateLeaf(game, player);
+		evalCache.store(key, score);
+		return score;
+	}
+	
+	private int evaluateLeaf(Game game, Player player) {
+		return neuralEvaluator != null ? neuralEvaluator.evaluate(player) : evaluate(game, player);
 	}
 
 	/**
@@ -121,14 +1235,15 @@ public class AIPlayer extends Player {
 	 * @param player The player at the deepest level of the search tree
 	 * @return The score indicating how good the game situation is for player
 	 */
-	private int evaluate(Game game, Player player) {
+	int evaluate(Game game, Player player) {
 		//see
 		int playerNumOfMills = 0, opponentNumOfMills = 0;
 		int playerNumOfTwoPieceConf = 0, opponentNumOfTwoPieceConf = 0;
 		int playerNumOfThreePieceConf, opponentNumOfThreePieceConf;
 		int playerNumOfDoubleMills, opponentNumOfDoubleMills;
-		int playerNumOfBlockedPieces = getNumOfBlockedPieces(game, player);
-		int opponentNumOfBlockedPieces = getNumOfBlockedPieces(game, game.getOtherPlayer(player));
+		int playerPositions = player.getOccupiedPositions(), opponentPositions = game.getOtherPlayer(player).getOccupiedPositions();
+		int playerNumOfBlockedPieces = MoveGenerator.blockedPieces(playerPositions, opponentPositions);
+		int opponentNumOfBlockedPieces = MoveGenerator.blockedPieces(opponentPositions, playerPositions);
 
 		//lists saving all player and opponent rows (two piece configurations or mills)
 		//to calculate three piece configurations and double Mills
@@ -193,12 +1308,15 @@ public class AIPlayer extends Player {
 		int threePieceConfDiff = playerNumOfThreePieceConf - opponentNumOfThreePieceConf;
 		int diffOfPieces = player.getNumOfRemainingPieces() - game.getOtherPlayer(player).getNumOfRemainingPieces();
 		int blockedPiecesDiff = opponentNumOfBlockedPieces - playerNumOfBlockedPieces; 
+		//the moves along the lines of the board, a player left without any loses
+		int mobilityDiff = MoveGenerator.mobility(playerPositions, opponentPositions) - MoveGenerator.mobility(opponentPositions, playerPositions);
 
 		int score;
 		if(player.getGamePhase() == GamePhase.PLACING_PIECES) {
 			score = 10 * doubleMillDiff + 20* millDiff + 30*diffOfPieces + 6*twoPieceConfDiff + 5 * threePieceConfDiff + 1 * blockedPiecesDiff;
 		} else if(player.getGamePhase() == GamePhase.MOVING_PIECES) {
-			score = 40 * doubleMillDiff + 20*millDiff + 30*diffOfPieces + 3*twoPieceConfDiff + 2 * threePieceConfDiff + 7 * blockedPiecesDiff;
+			score = 40 * doubleMillDiff + 20*millDiff + 30*diffOfPieces + 3*twoPieceConfDiff + 2 * threePieceConfDiff + 7 * blockedPiecesDiff
+					+ 2 * mobilityDiff;
 		} else {
 			score = 50 * doubleMillDiff + 10*millDiff + 30*diffOfPieces + 10*twoPieceConfDiff + 5 * threePieceConfDiff;
 		}
@@ -259,27 +1377,5 @@ public class AIPlayer extends Player {
 		}
 		return numOfDoubleMills;
 	}
-	
-	/**
-	 * This method determines the player's number of blocked pieces
-	 * @param game The game where everything takes place
-	 * @param player The player <b>owning</b> the blocked Pieces
-	 * @return Number of the player's blocked pieces
-	 */
-	private int getNumOfBlockedPieces(Game game, Player player) {
-		int numOfBlockedPieces = 0;
-		for(int i = 0; i < Board.BOARD_SIZE; i++) {
-			Position pos = game.getBoard().getPos(i);
-			if(pos.getPlayerOccupying() == player) {
-				for(Position adjPos: pos.getAdjacentPositions()) {
-					if(adjPos.getPlayerOccupying() != game.getOtherPlayer(player)) {
-						break;
-					}
-					numOfBlockedPieces++;
-				}
-			}
-		}
-		return numOfBlockedPieces;
-	}
 
 }
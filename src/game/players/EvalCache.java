@@ -0,0 +1,89 @@
+package game.players;
+import java.util.Arrays;
+
+/**
+ * Remembers the evaluation of leaf positions, which are reached again and again by different move orders.
+ *
+ * The cache is direct-mapped: every slot is a single long holding the score in the lower 32 bits
+ * and a tag taken from the hash of the position key in the upper 32 bits. A colliding position simply replaces the old one.
+ * Since a slot is written at once, the cache needs no locks.
+ */
+public class EvalCache {
+	/**
+	 * Returned by probe if the position isn't stored, no score is that low
+	 */
+	public static final long MISS = Long.MIN_VALUE;
+
+	private final long[] slots;
+	private final int mask;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param bits The cache holds 2^bits positions, each taking 8 bytes
+	 */
+	public EvalCache(int bits) {
+		if(bits < 1 || bits > 30) {
+			throw new IllegalArgumentException("bits out of range");
+		}
+		slots = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Looks up a position
+	 * @param key The position key, see Game.getPositionKey
+	 * @return The stored score or MISS if the position isn't stored
+	 */
+	public long probe(long key) {
+		long hash = hash(key);
+		long slot = slots[(int) hash & mask];
+		if((slot >>> 32) == tag(hash)) {
+			hits++;
+			return (int) slot;
+		}
+		misses++;
+		return MISS;
+	}
+
+	/**
+	 * Stores the score of a position
+	 * @param key The position key
+	 * @param score The score of the position
+	 */
+	public void store(long key, int score) {
+		long hash = hash(key);
+		slots[(int) hash & mask] = tag(hash) << 32 | (score & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Mixes all bits of the key, the lower bits select the slot and the upper bits form the tag
+	 */
+	private static long hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return h ^ h >>> 32;
+	}
+
+	/**
+	 * The tag is never 0, so the zeroed slots of a new cache never match
+	 */
+	private static long tag(long hash) {
+		return hash >>> 32 | 1;
+	}
+
+	public void clear() {
+		Arrays.fill(slots, 0);
+		hits = 0;
+		misses = 0;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,29 @@
+package game.players;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a completed iteration of the iterative deepening
+ */
+@Name(IterationEvent.NAME)
+@Label("Search Iteration")
+@Category({"Nine Men's Morris", "Search"})
+@Description("An iteration of the iterative deepening completed")
+class IterationEvent extends jdk.jfr.Event {
+	static final String NAME = "game.Iteration";
+
+	@Label("Depth")
+	int depth;
+
+	@Label("Nodes")
+	@Description("Nodes of the search up to the end of this iteration")
+	long nodes;
+
+	@Label("Score")
+	int score;
+
+	@Label("Move")
+	String move;
+}
@@ -0,0 +1,386 @@
+package game.players;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import game.*;
+import game.board.*;
+
+/**
+ * Computer player using Monte Carlo Tree Search with UCT instead of the Alpha Beta search.
+ *
+ * The tree is searched by several threads at once (tree parallelization). A thread selecting a node
+ * counts the visit immediately, before the playout result is known. Until the result is propagated back,
+ * this visit acts as a virtual loss and drives the other threads to different parts of the tree.
+ *
+ * The nodes live in a preallocated pool of parallel arrays and are referenced by their index,
+ * so a search creates no node objects and the pool is simply reset for the next search.
+ */
+public class MCTSPlayer extends AIPlayer {
+	private static final int UNEXPANDED = 0;
+	private static final int EXPANDING = 1;
+	private static final int EXPANDED = 2;
+	private static final int TERMINAL = 3;
+	/**
+	 * The node can't be expanded, because the pool is full
+	 */
+	private static final int POOL_EXHAUSTED = 4;
+	/**
+	 * Number of visits before a leaf is expanded
+	 */
+	private static final int EXPANSION_THRESHOLD = 2;
+	private static final double EXPLORATION = 1.4;
+	private static final int MAX_PLAYOUT_PLIES = 200;
+	/**
+	 * Probability to play a mill move in a playout, if there is one
+	 */
+	private static final double MILL_BIAS = 0.75;
+	//results are stored doubled to keep them integral: 2 for a win, 1 for a draw, 0 for a loss
+	private static final int WIN = 2, DRAW = 1, LOSS = 0;
+
+	private final long timeBudgetMillis;
+	private final int threads;
+	private final NodePool pool;
+	private ExecutorService executor;
+
+	/**
+	 * @param symbol shown in showPos
+	 * @param timeBudgetMillis Time to search for every move
+	 * @param threads Number of threads searching the tree
+	 * @param poolCapacity Maximum number of nodes of the tree
+	 */
+	public MCTSPlayer(char symbol, long timeBudgetMillis, int threads, int poolCapacity) {
+		super(symbol, 0);
+		this.timeBudgetMillis = timeBudgetMillis;
+		this.threads = threads;
+		this.pool = new NodePool(poolCapacity);
+	}
+
+	/**
+	 * Searches the best move for the configured time. The player has no depth, 
+	 * so the limits of the Alpha Beta search can't be built from it.
+	 * @param game The game where everything takes places, it is not modified
+	 * @param player The player in turn
+	 * @return See search(Game, Player, SearchLimits, Consumer)
+	 */
+	@Override
+	public SearchResult search(Game game, Player player) {
+		return search(game, player, new SearchLimits(1, SearchLimits.UNLIMITED, timeBudgetMillis), null);
+	}
+
+	/**
+	 * Searches the best move with Monte Carlo Tree Search for the configured time,
+	 * or the time of the limits if they restrict it. The depth and node limits don't apply to playouts.
+	 * The search stops early when stop() is called, onIteration is only called with the final result.
+	 * @param game The game where everything takes places, it is not modified
+	 * @param player The player in turn
+	 * @param limits The limits of the search
+	 * @param onIteration Called with the result, may be null
+	 * @return The most visited move, its score is the win rate scaled to [-1000, 1000]
+	 * and the nodes are the number of playouts
+	 */
+	@Override
+	public SearchResult search(Game game, Player player, SearchLimits limits, Consumer<SearchResult> onIteration) {
+		clearStopRequest();
+		pool.clear();
+		int root = pool.allocate(1);
+		pool.parent[root] = -1;
+		pool.visits.set(root, 1);
+		expand(root, game, player);
+		if(pool.state.get(root) == TERMINAL) {
+			return new SearchResult(null, -1000, 0, 0);
+		}
+		if(pool.numOfChildren[root] == 1) {
+			return new SearchResult(Move.fromCode(pool.moveCode[pool.firstChild[root]], game.getBoard()), 0, 0, 0);
+		}
+
+		long millis = limits.getMaxMillis() == SearchLimits.UNLIMITED ? timeBudgetMillis : limits.getMaxMillis();
+		long deadline = System.nanoTime() + millis * 1_000_000L;
+		LongAdder playouts = new LongAdder();
+		List<Callable<Void>> workers = new ArrayList<>();
+		for(int i = 0; i < threads; i++) {
+			//every thread plays on its own copy of the game
+			Game copy = new Game(game);
+			Player copyPlayer = copy.getCorrespondingPlayer(game, player);
+			SplittableRandom random = new SplittableRandom(getRandomGenerator().nextLong());
+			workers.add(() -> {
+				runIterations(copy, copyPlayer, deadline, random, playouts);
+				return null;
+			});
+		}
+		try {
+			for(Future<Void> f : getExecutor().invokeAll(workers)) {
+				f.get();
+			}
+		}
+		catch(InterruptedException x) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException x) {
+			throw new IllegalStateException(x.getCause());
+		}
+
+		//the most visited move is the most robust choice
+		int best = -1, bestVisits = -1;
+		for(int c = pool.firstChild[root]; c < pool.firstChild[root] + pool.numOfChildren[root]; c++) {
+			if(pool.visits.get(c) > bestVisits) {
+				bestVisits = pool.visits.get(c);
+				best = c;
+			}
+		}
+		double winRate = bestVisits == 0 ? 0.5 : pool.wins.get(best) / (2.0 * bestVisits);
+		SearchResult result = new SearchResult(Move.fromCode(pool.moveCode[best], game.getBoard()),
+				(int) Math.round((2 * winRate - 1) * 1000), 0, playouts.sum());
+		if(onIteration != null) {
+			onIteration.accept(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the search threads, the player can't search anymore afterwards
+	 */
+	public synchronized void shutdown() {
+		if(executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "mcts-worker");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Main loop of a search thread: selection, expansion, playout and backpropagation until the deadline
+	 */
+	private void runIterations(Game game, Player rootPlayer, long deadline, SplittableRandom random, LongAdder playouts) {
+		int[] path = new int[64];
+		int[] playoutMoves = new int[MAX_PLAYOUT_PLIES];
+
+		while(System.nanoTime() < deadline && !isStopRequested()) {
+			int node = 0, length = 1;
+			path[0] = 0;
+			pool.visits.incrementAndGet(0);
+			Player player = rootPlayer;
+			int result;
+
+			while(true) {
+				int state = pool.state.get(node);
+				if(state == TERMINAL) {
+					result = LOSS;
+					break;
+				}
+				if(state == UNEXPANDED && pool.visits.get(node) >= EXPANSION_THRESHOLD
+						&& pool.state.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+					expand(node, game, player);
+					state = pool.state.get(node);
+					if(state == TERMINAL) {
+						result = LOSS;
+						break;
+					}
+				}
+				if(state != EXPANDED) {
+					//a leaf, either not visited often enough or expanded by another thread at the moment
+					result = playout(game, player, random, playoutMoves);
+					break;
+				}
+				node = select(node);
+				//counting the visit now acts as virtual loss until the result is known
+				pool.visits.incrementAndGet(node);
+				game.applyMoveCode(pool.moveCode[node], player);
+				player = game.getOtherPlayer(player);
+				if(length == path.length) {
+					path = Arrays.copyOf(path, length * 2);
+				}
+				path[length++] = node;
+			}
+
+			//the result is the one of the player to move at the leaf, but a node stores the wins of the
+			//player who moved into it, so the result is flipped on every level
+			for(int i = length - 1; i >= 0; i--) {
+				pool.wins.addAndGet(path[i], WIN - result);
+				result = WIN - result;
+				if(i > 0) {
+					player = game.getOtherPlayer(player);
+					game.undoMoveCode(pool.moveCode[path[i]], player);
+				}
+			}
+			playouts.increment();
+		}
+	}
+
+	/**
+	 * Selects the child with the highest UCT value, unvisited children first
+	 */
+	private int select(int node) {
+		int first = pool.firstChild[node], end = first + pool.numOfChildren[node];
+		double logVisits = Math.log(Math.max(1, pool.visits.get(node)));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for(int c = first; c < end; c++) {
+			int visits = pool.visits.get(c);
+			if(visits == 0) {
+				return c;
+			}
+			double value = pool.wins.get(c) / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+			if(value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Creates the children of a node, the caller has to own the node by setting its state to EXPANDING
+	 * (or being the only thread as for the root)
+	 */
+	private void expand(int node, Game game, Player player) {
+		if(player.getNumOfRemainingPieces() <= 2) {
+			pool.state.set(node, TERMINAL);
+			return;
+		}
+		List<Move> moves = game.generatePossibleMoves(player);
+		if(moves.isEmpty()) {
+			pool.state.set(node, TERMINAL);
+			return;
+		}
+		int first = pool.allocate(moves.size());
+		if(first < 0) {
+			pool.state.set(node, POOL_EXHAUSTED);
+			return;
+		}
+		for(int i = 0; i < moves.size(); i++) {
+			pool.moveCode[first + i] = moves.get(i).toCode();
+			pool.parent[first + i] = node;
+		}
+		pool.firstChild[node] = first;
+		pool.numOfChildren[node] = moves.size();
+		//the volatile write publishes the children to the other threads
+		pool.state.set(node, EXPANDED);
+	}
+
+	/**
+	 * Plays random moves, preferring mills, until a player lost or the ply limit is reached.
+	 * The game is restored afterwards.
+	 * @return The result for player
+	 */
+	private int playout(Game game, Player player, SplittableRandom random, int[] moves) {
+		Player current = player;
+		Player loser = null;
+		int plies = 0;
+		while(plies < MAX_PLAYOUT_PLIES) {
+			if(current.getNumOfRemainingPieces() <= 2) {
+				loser = current;
+				break;
+			}
+			if(game.isDraw()) {
+				break;
+			}
+			List<Move> possibleMoves = game.generatePossibleMoves(current);
+			if(possibleMoves.isEmpty()) {
+				loser = current;
+				break;
+			}
+			int mills = 0;
+			for(Move m : possibleMoves) {
+				if(m.getPieceToRemove() != null) {
+					mills++;
+				}
+			}
+			Move move;
+			if(mills > 0 && random.nextDouble() < MILL_BIAS) {
+				int n = random.nextInt(mills);
+				move = null;
+				for(Move m : possibleMoves) {
+					if(m.getPieceToRemove() != null && n-- == 0) {
+						move = m;
+						break;
+					}
+				}
+			}
+			else {
+				move = possibleMoves.get(random.nextInt(possibleMoves.size()));
+			}
+			moves[plies++] = move.toCode();
+			game.applyMoveCode(moves[plies - 1], current);
+			current = game.getOtherPlayer(current);
+		}
+
+		if(loser == null && plies == MAX_PLAYOUT_PLIES) {
+			//no decision within the ply limit, the player with more pieces is considered the winner
+			int diff = player.getNumOfRemainingPieces() - game.getOtherPlayer(player).getNumOfRemainingPieces();
+			loser = diff > 0 ? game.getOtherPlayer(player) : diff < 0 ? player : null;
+		}
+		while(plies > 0) {
+			current = game.getOtherPlayer(current);
+			game.undoMoveCode(moves[--plies], current);
+		}
+		return loser == null ? DRAW : loser == player ? LOSS : WIN;
+	}
+
+	/**
+	 * The preallocated nodes of the tree as parallel arrays indexed by node.
+	 * Children of a node are allocated in one block, so a node only knows its first child and their number.
+	 */
+	private static final class NodePool {
+		final int capacity;
+		final int[] parent;
+		final int[] moveCode;
+		final int[] firstChild;
+		final int[] numOfChildren;
+		final AtomicIntegerArray visits;
+		final AtomicIntegerArray wins;
+		final AtomicIntegerArray state;
+		final AtomicInteger size = new AtomicInteger();
+
+		NodePool(int capacity) {
+			this.capacity = capacity;
+			parent = new int[capacity];
+			moveCode = new int[capacity];
+			firstChild = new int[capacity];
+			numOfChildren = new int[capacity];
+			visits = new AtomicIntegerArray(capacity);
+			wins = new AtomicIntegerArray(capacity);
+			state = new AtomicIntegerArray(capacity);
+		}
+
+		void clear() {
+			size.set(0);
+		}
+
+		/**
+		 * Allocates a block of nodes and resets them
+		 * @return The index of the first node or -1 if the pool is full
+		 */
+		int allocate(int count) {
+			int first = size.getAndAdd(count);
+			if(first + count > capacity) {
+				return -1;
+			}
+			for(int i = first; i < first + count; i++) {
+				numOfChildren[i] = 0;
+				visits.set(i, 0);
+				wins.set(i, 0);
+				state.set(i, UNEXPANDED);
+			}
+			return first;
+		}
+	}
+}
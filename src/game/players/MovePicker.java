@@ -0,0 +1,129 @@
+package game.players;
+import game.*;
+import game.board.*;
+
+/**
+ * Hands out the moves of a node of the Alpha Beta search one at a time in the order they are likely to be best,
+ * generating each stage only when the previous one is exhausted:
+ * first the hash moves (the move of the principal variation and the move of the transposition table), which need no generation at all,
+ * then the captures (moves closing a mill), then the killer moves (quiet moves that caused a cutoff at the same ply before)
+ * and finally all other quiet moves. A node cut off by an early move never generates the later stages.
+ *
+ * Moves handed out in an earlier stage are skipped in the later ones, every move is returned exactly once.
+ */
+class MovePicker {
+	private static final int HASH_MOVES = 0, CAPTURES = 1, KILLERS = 2, QUIETS = 3, DONE = 4;
+
+	private final MoveGenerator generator = new MoveGenerator();
+	private int stage;
+	private int index;
+	private final int[] hashMoves = new int[2];
+	private final int[] killerMoves = new int[2];
+
+	/**
+	 * Starts picking the moves of a position
+	 * @param game The game where everything takes place
+	 * @param player The player in turn
+	 */
+	public void reset(Game game, Player player) {
+		Player opponent = game.getOtherPlayer(player);
+		generator.reset(player.getGamePhase(), player.getOccupiedPositions(), opponent.getOccupiedPositions(),
+				opponent.getGamePhase() == GamePhase.FLYING_PIECES);
+		stage = HASH_MOVES;
+		index = 0;
+		hashMoves[0] = hashMoves[1] = -1;
+		killerMoves[0] = killerMoves[1] = -1;
+	}
+
+	/**
+	 * @return Has the player any move?
+	 */
+	public boolean hasMoves() {
+		return generator.hasMoves();
+	}
+
+	/**
+	 * @param code The code of a move
+	 * @return Is the move legal in the position?
+	 */
+	public boolean contains(int code) {
+		return code >= 0 && generator.contains(code);
+	}
+
+	/**
+	 * Sets the moves tried first, illegal moves and repetitions are ignored. Must be called before the first move is picked.
+	 * @param first The code of the first move or -1
+	 * @param second The code of the second move or -1
+	 */
+	public void setHashMoves(int first, int second) {
+		int n = 0;
+		if(contains(first)) {
+			hashMoves[n++] = first;
+		}
+		if(second != first && contains(second)) {
+			hashMoves[n++] = second;
+		}
+	}
+
+	/**
+	 * Sets the killer moves of the ply, only legal quiet moves are picked
+	 * @param killers The codes of the killer moves, -1 for none
+	 */
+	public void setKillerMoves(int[] killers) {
+		int n = 0;
+		for(int killer : killers) {
+			if(killer >= 0 && !MoveGenerator.isCapture(killer) && !isHashMove(killer) && contains(killer)) {
+				killerMoves[n++] = killer;
+			}
+		}
+	}
+
+	/**
+	 * @return The code of the next move or -1 if all moves were picked
+	 */
+	public int next() {
+		while(true) {
+			switch(stage) {
+				case HASH_MOVES:
+					if(index < hashMoves.length && hashMoves[index] >= 0) {
+						return hashMoves[index++];
+					}
+					stage = CAPTURES;
+					break;
+				case CAPTURES:
+					int capture;
+					do {
+						capture = generator.nextCapture();
+					} while(capture >= 0 && isHashMove(capture));
+					if(capture >= 0) {
+						return capture;
+					}
+					stage = KILLERS;
+					index = 0;
+					break;
+				case KILLERS:
+					if(index < killerMoves.length && killerMoves[index] >= 0) {
+						return killerMoves[index++];
+					}
+					stage = QUIETS;
+					break;
+				case QUIETS:
+					int quiet;
+					do {
+						quiet = generator.nextQuiet();
+					} while(quiet >= 0 && (isHashMove(quiet) || quiet == killerMoves[0] || quiet == killerMoves[1]));
+					if(quiet >= 0) {
+						return quiet;
+					}
+					stage = DONE;
+					break;
+				default:
+					return -1;
+			}
+		}
+	}
+
+	private boolean isHashMove(int code) {
+		return code == hashMoves[0] || code == hashMoves[1];
+	}
+}
@@ -0,0 +1,402 @@
+package game.players;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import game.*;
+import game.board.*;
+
+/**
+ * The Alpha Beta search of an AIPlayer run by several threads of a ForkJoinPool, see AIPlayer.enableParallelSearch.
+ *
+ * The work is split by the Young Brothers Wait Concept: the first move of a node is always searched alone,
+ * only if it doesn't cause a cutoff the node becomes a split point and its remaining moves (the young brothers)
+ * are shared with helper tasks. The helpers take the moves one by one from the split point, so an idle thread steals
+ * the remaining moves of any split point and no core waits while moves are left.
+ * Nodes with little remaining depth aren't split, reaching the split point would cost more than the subtree.
+ *
+ * The nodes are searched by AIPlayer.alphaBeta, like in the sequential search. Every task borrows a worker: a search stack
+ * with the move pickers, killer moves and principal variation table of the thread, and a copy of the game taken once per search.
+ * A helper reaches the split point by replaying the moves leading to it on the game of its worker and undoes them afterwards.
+ * The workers are kept in a free list, a thread waiting for a helper may run another task meanwhile, which then borrows another one.
+ *
+ * The bounds of a split point are shared through atomics: a helper reads the current alpha before every move, and a cutoff
+ * found by any helper stops all other searches below the split point. The transposition table and the evaluation cache
+ * of the player work without locks and are shared by all threads.
+ *
+ * The scores are those of the sequential search, but which nodes are visited depends on the timing of the threads.
+ */
+class ParallelSearch {
+	/**
+	 * Nodes with less remaining depth are searched by one thread
+	 */
+	static final int MIN_SPLIT_DEPTH = 3;
+
+	private final AIPlayer owner;
+	private final ForkJoinPool pool;
+	/**
+	 * The workers not borrowed by a task
+	 */
+	private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+
+	//state of the running search
+	private int generation;
+	private Game rootGame;
+	private Player rootPlayer;
+	private long deadline;
+	private long maxNodes;
+	private final LongAdder nodes = new LongAdder();
+
+	/**
+	 * @param owner The player whose search is run
+	 * @param threads Number of threads
+	 */
+	ParallelSearch(AIPlayer owner, int threads) {
+		this.owner = owner;
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * @return Number of threads searching
+	 */
+	int getThreads() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Starts searching a new position, the workers copy the game again and forget their killer moves
+	 */
+	void newSearch() {
+		generation++;
+	}
+
+	/**
+	 * Searches the moves of a position to a fixed depth with a full window
+	 * @param game The game where everything takes place, it isn't changed
+	 * @param player The player in turn
+	 * @param moves The legal moves, in the order they are searched
+	 * @param depth The depth to search
+	 * @param deadline The time the search has to stop as given by System.nanoTime()
+	 * @param maxNodes The maximum number of nodes
+	 * @return The best move of the list, its score and its principal variation, null if the search was stopped before it completed
+	 */
+	SearchResult search(Game game, Player player, List<Move> moves, int depth, long deadline, long maxNodes) {
+		this.rootGame = game;
+		this.rootPlayer = player;
+		this.deadline = deadline;
+		this.maxNodes = maxNodes;
+		nodes.reset();
+		int[] codes = new int[moves.size()];
+		for(int i = 0; i < codes.length; i++) {
+			codes[i] = moves.get(i).toCode();
+		}
+		RootTask root = new RootTask(codes, depth);
+		pool.invoke(root);
+		if(owner.isAborted()) {
+			return null;
+		}
+		//the move object of the list is returned, the caller reorders the list by it
+		Move bestMove = moves.get(0);
+		for(Move move : moves) {
+			if(move.toCode() == root.bestMove) {
+				bestMove = move;
+			}
+		}
+		return new SearchResult(bestMove, root.bestValue, depth, nodes.sum(), root.variation);
+	}
+
+	/**
+	 * @return Number of nodes visited by the last search
+	 */
+	long getNodes() {
+		return nodes.sum();
+	}
+
+	/**
+	 * @param remainingDepth The remaining depth of a node whose first move didn't cause a cutoff
+	 * @return Should the remaining moves of the node be shared?
+	 */
+	boolean shouldSplit(int remainingDepth) {
+		return remainingDepth >= MIN_SPLIT_DEPTH && pool.getParallelism() > 1;
+	}
+
+	/**
+	 * Adds the nodes of a stack not yet counted and stops the search if it was asked to or a limit is exceeded
+	 */
+	void checkLimits(SearchStack s) {
+		flushNodes(s);
+		if(owner.isStopRequested() || nodes.sum() >= maxNodes || System.nanoTime() >= deadline) {
+			owner.abortSearch();
+		}
+	}
+
+	private void flushNodes(SearchStack s) {
+		nodes.add(s.nodes - s.countedNodes);
+		s.countedNodes = s.nodes;
+	}
+
+	/**
+	 * Makes a node a split point for its remaining moves, searches them together with the helpers and waits for them
+	 * @param s The stack of the thread searching the node
+	 * @param game The game of the thread, showing the position of the node
+	 * @param player The player in turn
+	 * @param picker The move picker of the node, the moves it didn't return yet are shared
+	 * @param depth The remaining depth of the node
+	 * @param ply The distance of the node to the root
+	 * @param alpha
+	 * @param beta
+	 * @param bestValue The value of the moves searched so far
+	 * @param bestMove The best of the moves searched so far
+	 * @return The split point with the result or null if there were no moves left
+	 */
+	SplitPoint split(SearchStack s, Game game, Player player, MovePicker picker, int depth, int ply,
+			int alpha, int beta, int bestValue, int bestMove) {
+		int[] codes = new int[8];
+		int n = 0;
+		for(int code = picker.next(); code >= 0; code = picker.next()) {
+			if(n == codes.length) {
+				codes = Arrays.copyOf(codes, n * 2);
+			}
+			codes[n++] = code;
+		}
+		if(n == 0) {
+			return null;
+		}
+		SplitPoint sp = new SplitPoint(s.split, Arrays.copyOf(s.path, ply), Arrays.copyOf(codes, n), alpha, beta, bestValue, bestMove);
+		share(s, game, player, sp, depth, ply, n);
+		return sp;
+	}
+
+	/**
+	 * Searches the moves of a split point with the thread of the stack and as many helpers as useful
+	 * @param n Number of moves of the split point
+	 */
+	private void share(SearchStack s, Game game, Player player, SplitPoint sp, int depth, int ply, int n) {
+		HelperTask[] helpers = new HelperTask[Math.min(pool.getParallelism() - 1, n - 1)];
+		for(int i = 0; i < helpers.length; i++) {
+			helpers[i] = new HelperTask(sp, depth, ply);
+			helpers[i].fork();
+		}
+		SplitPoint parent = s.split;
+		s.split = sp;
+		work(s, game, player, sp, depth, ply);
+		s.split = parent;
+		//a helper not started yet is run by this thread
+		for(int i = helpers.length - 1; i >= 0; i--) {
+			helpers[i].join();
+		}
+	}
+
+	/**
+	 * Searches the moves of a split point until none are left or it is cut off
+	 * @param s The stack of the thread, its split point is sp
+	 */
+	private void work(SearchStack s, Game game, Player player, SplitPoint sp, int depth, int ply) {
+		Player opponent = game.getOtherPlayer(player);
+		int i;
+		while(!owner.isAborted() && !s.isCutOff() && (i = sp.next.getAndIncrement()) < sp.codes.length) {
+			int code = sp.codes[i];
+			s.followingVariation = false;
+			s.path[ply] = code;
+			game.applyMoveCode(code, player);
+			int value = -owner.alphaBeta(s, game, opponent, depth - 1, ply + 1, -sp.beta, -sp.alpha.get());
+			game.undoMoveCode(code, player);
+			if(owner.isAborted() || s.isCutOff()) {
+				return;
+			}
+			sp.update(value, code, s.pvTable[ply + 1], s.pvLength[ply + 1]);
+		}
+	}
+
+	/**
+	 * Borrows an idle worker or creates one, its game shows the root position of the running search
+	 */
+	private Worker acquire() {
+		Worker worker = idleWorkers.poll();
+		if(worker == null) {
+			worker = new Worker();
+		}
+		if(worker.generation != generation) {
+			worker.generation = generation;
+			worker.game = new Game(rootGame);
+			worker.stack.clearKillers();
+		}
+		worker.player = worker.game.getCorrespondingPlayer(rootGame, rootPlayer);
+		return worker;
+	}
+
+	private void release(Worker worker) {
+		flushNodes(worker.stack);
+		worker.stack.split = null;
+		idleWorkers.add(worker);
+	}
+
+	/**
+	 * A node whose remaining moves are searched by several tasks
+	 */
+	static class SplitPoint {
+		final SplitPoint parent;
+		/**
+		 * The moves leading from the root to the node
+		 */
+		final int[] path;
+		final int[] codes;
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger alpha;
+		final int beta;
+		volatile boolean cutoff;
+		//guarded by this, read by the thread of the node once the helpers are done
+		int bestValue;
+		int bestMove;
+		/**
+		 * The line of the best move, the move followed by the principal variation of its subtree
+		 */
+		final int[] variation = new int[AIPlayer.MAX_PLY + 1];
+		int variationLength;
+
+		SplitPoint(SplitPoint parent, int[] path, int[] codes, int alpha, int beta, int bestValue, int bestMove) {
+			this.parent = parent;
+			this.path = path;
+			this.codes = codes;
+			this.alpha = new AtomicInteger(alpha);
+			this.beta = beta;
+			this.bestValue = bestValue;
+			this.bestMove = bestMove;
+		}
+
+		/**
+		 * @return Was this split point or one above it cut off, so the searches below it are useless?
+		 */
+		boolean isCutOff() {
+			for(SplitPoint sp = this; sp != null; sp = sp.parent) {
+				if(sp.cutoff) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Takes over the result of a searched move
+		 * @param value The value of the move
+		 * @param code The move
+		 * @param line The principal variation after the move
+		 * @param length The length of line
+		 */
+		synchronized void update(int value, int code, int[] line, int length) {
+			if(value > bestValue) {
+				bestValue = value;
+				bestMove = code;
+				variation[0] = code;
+				System.arraycopy(line, 0, variation, 1, length);
+				variationLength = length + 1;
+			}
+			alpha.accumulateAndGet(value, Math::max);
+			if(value >= beta) {
+				cutoff = true;
+			}
+		}
+	}
+
+	/**
+	 * The state of a thread: its search stack and its copy of the game, taken once per searched position
+	 */
+	private class Worker {
+		final SearchStack stack = new SearchStack(ParallelSearch.this);
+		int generation = -1;
+		Game game;
+		/**
+		 * The player of the game in turn at the root
+		 */
+		Player player;
+	}
+
+	/**
+	 * Searches the root moves: the first one alone, then all others in parallel
+	 */
+	private class RootTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] codes;
+		private final int depth;
+		int bestValue = Integer.MIN_VALUE + 1;
+		int bestMove = -1;
+		int[] variation;
+
+		RootTask(int[] codes, int depth) {
+			this.codes = codes;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			Worker worker = acquire();
+			SearchStack s = worker.stack;
+			Game game = worker.game;
+			Player player = worker.player;
+			s.followingVariation = owner.isOnOrderingVariation(codes[0]);
+			s.path[0] = codes[0];
+			game.applyMoveCode(codes[0], player);
+			bestValue = -owner.alphaBeta(s, game, game.getOtherPlayer(player), depth - 1, 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+			game.undoMoveCode(codes[0], player);
+			bestMove = codes[0];
+			variation = AIPlayer.variation(bestMove, s.pvTable[1], s.pvLength[1]);
+			if(codes.length > 1 && !owner.isAborted()) {
+				SplitPoint sp = new SplitPoint(null, new int[0], Arrays.copyOfRange(codes, 1, codes.length),
+						bestValue, Integer.MAX_VALUE, bestValue, bestMove);
+				share(s, game, player, sp, depth, 0, codes.length - 1);
+				if(sp.bestMove != bestMove) {
+					bestValue = sp.bestValue;
+					bestMove = sp.bestMove;
+					variation = Arrays.copyOf(sp.variation, sp.variationLength);
+				}
+			}
+			//a worker left in an unknown state by an exception isn't reused
+			release(worker);
+		}
+	}
+
+	/**
+	 * Helps searching the moves of a split point, on the game of a borrowed worker
+	 */
+	private class HelperTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final SplitPoint sp;
+		private final int depth;
+		private final int ply;
+
+		HelperTask(SplitPoint sp, int depth, int ply) {
+			this.sp = sp;
+			this.depth = depth;
+			this.ply = ply;
+		}
+
+		@Override
+		protected void compute() {
+			if(sp.isCutOff() || sp.next.get() >= sp.codes.length) {
+				//nothing left to help with, the game isn't even set up
+				return;
+			}
+			Worker worker = acquire();
+			SearchStack s = worker.stack;
+			Game game = worker.game;
+			//the moves leading to the split point are replayed, the players alternate from the root on
+			Player player = worker.player;
+			for(int i = 0; i < ply; i++) {
+				s.path[i] = sp.path[i];
+				game.applyMoveCode(sp.path[i], player);
+				player = game.getOtherPlayer(player);
+			}
+			s.split = sp;
+			work(s, game, player, sp, depth, ply);
+			for(int i = ply - 1; i >= 0; i--) {
+				player = game.getOtherPlayer(player);
+				game.undoMoveCode(sp.path[i], player);
+			}
+			//a worker left in an unknown state by an exception isn't reused
+			release(worker);
+		}
+	}
+}
@@ -13,6 +13,11 @@ public class Player {
 	private GamePhase gamePhase;
 	private int numOfPlacedPieces;
 	private int numOfRemainingPieces;
+	/**
+	 * Bit mask of the board indices occupied by the player, 
+	 * maintained by Position.setPlayerOccupying
+	 */
+	private int occupiedPositions;
 	/**
 	 * The symbol to display in the console
 	 */
@@ -25,6 +30,19 @@ public class Player {
 		this.symbol = symbol;
 	}
 	
+	/**
+	 * Copy Constructor
+	 * copies the symbol and the piece counts, but not the occupied positions,
+	 * they are set when the pieces are put on the board of the copied game
+	 * @param playerToCopy The player to be copied
+	 */
+	public Player(Player playerToCopy) {
+		this.gamePhase = playerToCopy.gamePhase;
+		this.numOfPlacedPieces = playerToCopy.numOfPlacedPieces;
+		this.numOfRemainingPieces = playerToCopy.numOfRemainingPieces;
+		this.symbol = playerToCopy.symbol;
+	}
+	
 	public GamePhase getGamePhase() {
 		return gamePhase;
 	}
@@ -90,6 +108,31 @@ public class Player {
 	public int getNumOfRemainingPieces() {
 		return numOfRemainingPieces;
 	}
+
+	/**
+	 * @return Bit mask with bit i set if the player occupies the position with index i
+	 */
+	public int getOccupiedPositions() {
+		return occupiedPositions;
+	}
+
+	/**
+	 * Marks the position with the given index as occupied by the player.
+	 * Only to be called by Position, otherwise the mask and the board diverge
+	 * @param index Index of the position
+	 */
+	public void addOccupiedPosition(int index) {
+		occupiedPositions |= 1 << index;
+	}
+
+	/**
+	 * Marks the position with the given index as no longer occupied by the player.
+	 * Only to be called by Position, otherwise the mask and the board diverge
+	 * @param index Index of the position
+	 */
+	public void removeOccupiedPosition(int index) {
+		occupiedPositions &= ~(1 << index);
+	}
 	
 	
 }
@@ -0,0 +1,321 @@
+package game.players;
+import java.util.Arrays;
+import java.util.List;
+import game.*;
+import game.board.*;
+
+/**
+ * Depth-first proof-number search (df-pn) to prove that a player (the attacker) can force a win,
+ * e.g. by a sequence of mills or by blocking all pieces of the opponent.
+ *
+ * Proof and disproof numbers are kept in a direct-mapped table of fixed size, a colliding
+ * position simply replaces the old one. The table survives between searches, so a proven line
+ * can be followed in the next turns by looking up the positions instead of searching again.
+ *
+ * Positions the search of the AIPlayer rates as draw (a repetition of the game so far or of the current path,
+ * or the limit of moves without mill reached) and positions beyond the ply limit count as not won for the attacker.
+ * These disproofs depend on the path, so they and the disproofs derived from them are only valid during the
+ * solve that found them. Within a solve a stored result may in rare cases still differ from the exact
+ * game theoretic value (graph history interaction), which is accepted here.
+ * A proof holds for at most as many moves without mill as there were when it was found, a proof found with
+ * fewer isn't used.
+ */
+public class ProofNumberSearch {
+	public enum Result { PROVEN, DISPROVEN, UNKNOWN }
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	/**
+	 * Marks a free slot of the table, no position key has all bits set
+	 */
+	private static final long EMPTY = -1L;
+	private static final int MAX_PLY = 64;
+	/**
+	 * Set in the keys of positions with the attacker in turn. The numbers of a position differ 
+	 * depending on which player is the attacker, so both cases are stored separately.
+	 */
+	private static final long ATTACKER_TO_MOVE = 1L << 62;
+	/**
+	 * The solve of results valid in every solve
+	 */
+	private static final int PERMANENT = 0;
+
+	private final long[] keys;
+	private final int[] proofNumbers;
+	private final int[] disproofNumbers;
+	/**
+	 * PERMANENT or the solve the numbers of a position were found in, if they depend on its path
+	 */
+	private final int[] solves;
+	/**
+	 * The moves without mill of a proven position when it was proven
+	 */
+	private final int[] movesWithoutMill;
+	private final int mask;
+	private final long[] path = new long[MAX_PLY + 1];
+
+	private Player attacker;
+	private int solve = PERMANENT;
+	private long nodes;
+	private long maxNodes;
+	private long deadline;
+	private boolean aborted;
+
+	/**
+	 * @param bits The table holds 2^bits positions, each taking 24 bytes (key, proof and disproof number, solve and moves without mill)
+	 */
+	public ProofNumberSearch(int bits) {
+		keys = new long[1 << bits];
+		proofNumbers = new int[1 << bits];
+		disproofNumbers = new int[1 << bits];
+		solves = new int[1 << bits];
+		movesWithoutMill = new int[1 << bits];
+		mask = (1 << bits) - 1;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Tries to prove that attacker wins the game within the given budget
+	 * @param game The game where everything takes places
+	 * @param sideToMove The player in turn
+	 * @param attacker The player whose win is to be proven
+	 * @param maxNodes Maximum number of nodes to visit
+	 * @param maxMillis Maximum time to search
+	 * @return PROVEN if attacker wins, DISPROVEN if attacker can't force a win, UNKNOWN if the budget was exceeded
+	 */
+	public Result solve(Game game, Player sideToMove, Player attacker, long maxNodes, long maxMillis) {
+		this.attacker = attacker;
+		this.nodes = 0;
+		this.maxNodes = maxNodes;
+		this.deadline = System.nanoTime() + maxMillis * 1_000_000L;
+		this.aborted = false;
+		//forgets the results depending on the paths of earlier solves
+		solve = solve == Integer.MAX_VALUE ? PERMANENT + 1 : solve + 1;
+		searchNode(game, sideToMove, 0, INFINITY, INFINITY);
+		int slot = lookup(tableKey(game, sideToMove));
+		if(slot >= 0 && proofNumbers[slot] == 0) {
+			return Result.PROVEN;
+		}
+		if(slot >= 0 && disproofNumbers[slot] == 0) {
+			return Result.DISPROVEN;
+		}
+		return Result.UNKNOWN;
+	}
+
+	/**
+	 * Looks up a winning move of the attacker in a position proven before, without searching.
+	 * The draw rules are checked again for the game as it is now, a move leading to a draw isn't returned.
+	 * @param game The game where everything takes places
+	 * @param attacker The player in turn, whose win was proven
+	 * @return The move leading to a proven position or null if the position isn't proven (anymore)
+	 */
+	public Move findProvenMove(Game game, Player attacker) {
+		this.attacker = attacker;
+		if(!isProven(game, attacker)) {
+			return null;
+		}
+		Player defender = game.getOtherPlayer(attacker);
+		for(Move move : game.generatePossibleMoves(attacker)) {
+			game.applyMoveCode(move.toCode(), attacker);
+			boolean won = defender.getNumOfRemainingPieces() <= 2;
+			if(!won && !isDrawn(game)) {
+				won = isProven(game, defender);
+			}
+			game.undoMoveCode(move.toCode(), attacker);
+			if(won) {
+				return move;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Number of nodes visited by the last call of solve
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Forgets all proof and disproof numbers
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Decides whether a position is worth trying to solve: both players have left the placing pieces phase
+	 * and either one of them has few pieces left or few moves, i.e. a forced mill sequence or a blockade may be near.
+	 * @param game The game where everything takes places
+	 * @param player The player in turn
+	 * @return Is the position tactical?
+	 */
+	public static boolean isTactical(Game game, Player player) {
+		Player opponent = game.getOtherPlayer(player);
+		if(player.getGamePhase() == GamePhase.PLACING_PIECES || opponent.getGamePhase() == GamePhase.PLACING_PIECES) {
+			return false;
+		}
+		if(Math.min(player.getNumOfRemainingPieces(), opponent.getNumOfRemainingPieces()) <= 4) {
+			return true;
+		}
+		return game.generatePossibleMoves(opponent).size() <= 2 || game.generatePossibleMoves(player).size() <= 2;
+	}
+
+	/**
+	 * The recursive part of df-pn (also known as MID). Expands the most proving child until the proof or
+	 * disproof number of the node reaches its threshold and stores the numbers of the node in the table.
+	 * The attacker's nodes are OR nodes, the defender's nodes AND nodes.
+	 */
+	private void searchNode(Game game, Player player, int ply, int proofThreshold, int disproofThreshold) {
+		nodes++;
+		long key = tableKey(game, player);
+		boolean orNode = player == attacker;
+
+		//the piece count decides the game before move generation is needed
+		if(player.getNumOfRemainingPieces() <= 2) {
+			store(key, orNode ? INFINITY : 0, orNode ? 0 : INFINITY, PERMANENT, game);
+			return;
+		}
+		List<Move> moves = game.generatePossibleMoves(player);
+		if(moves.isEmpty()) {
+			//a blocked player loses
+			store(key, orNode ? INFINITY : 0, orNode ? 0 : INFINITY, PERMANENT, game);
+			return;
+		}
+		if(ply == MAX_PLY || ply > 0 && isDrawn(game)) {
+			//reaching the ply limit or a draw counts as a failure of the attacker on this path only
+			store(key, INFINITY, 0, solve, game);
+			return;
+		}
+
+		Player opponent = game.getOtherPlayer(player);
+		int[] codes = new int[moves.size()];
+		long[] childKeys = new long[moves.size()];
+		int[] childMovesWithoutMill = new int[moves.size()];
+		for(int i = 0; i < codes.length; i++) {
+			codes[i] = moves.get(i).toCode();
+			game.applyMoveCode(codes[i], player);
+			childKeys[i] = tableKey(game, opponent);
+			childMovesWithoutMill[i] = game.getMovesWithoutMill();
+			game.undoMoveCode(codes[i], player);
+		}
+		path[ply] = key;
+
+		while(true) {
+			//proof number of an OR node is the minimum of its children, the disproof number the sum, vice versa for AND nodes
+			int minNumber = INFINITY, secondNumber = INFINITY, sum = 0, best = -1, bestOther = 0;
+			boolean pathDependent = false;
+			for(int i = 0; i < codes.length; i++) {
+				int pn, dn;
+				if(isOnPath(childKeys[i], ply)) {
+					//a repetition is not a win for the attacker
+					pn = INFINITY;
+					dn = 0;
+					pathDependent = true;
+				}
+				else {
+					int slot = lookup(childKeys[i]);
+					if(slot >= 0 && proofNumbers[slot] == 0 && childMovesWithoutMill[i] > movesWithoutMill[slot]) {
+						//proven with fewer moves left until the draw, so it has to be searched again
+						slot = -1;
+					}
+					pn = slot >= 0 ? proofNumbers[slot] : 1;
+					dn = slot >= 0 ? disproofNumbers[slot] : 1;
+					pathDependent |= slot >= 0 && solves[slot] != PERMANENT;
+				}
+				int selecting = orNode ? pn : dn, other = orNode ? dn : pn;
+				sum = Math.min(INFINITY, sum + other);
+				if(selecting < minNumber) {
+					secondNumber = minNumber;
+					minNumber = selecting;
+					best = i;
+					bestOther = other;
+				}
+				else if(selecting < secondNumber) {
+					secondNumber = selecting;
+				}
+			}
+			int pn = orNode ? minNumber : sum, dn = orNode ? sum : minNumber;
+			if(pn >= proofThreshold || dn >= disproofThreshold || aborted || exceedsBudget()) {
+				//a proof never relies on a child that isn't won, so only the other numbers can depend on the path
+				store(key, pn, dn, pathDependent && pn != 0 ? solve : PERMANENT, game);
+				return;
+			}
+
+			//thresholds of the child: stay below the second best child and don't exceed the own threshold
+			int childProof, childDisproof;
+			if(orNode) {
+				childProof = Math.min(proofThreshold, secondNumber == INFINITY ? INFINITY : secondNumber + 1);
+				childDisproof = Math.min(INFINITY, disproofThreshold - dn + bestOther);
+			}
+			else {
+				childDisproof = Math.min(disproofThreshold, secondNumber == INFINITY ? INFINITY : secondNumber + 1);
+				childProof = Math.min(INFINITY, proofThreshold - pn + bestOther);
+			}
+			game.applyMoveCode(codes[best], player);
+			searchNode(game, opponent, ply + 1, childProof, childDisproof);
+			game.undoMoveCode(codes[best], player);
+		}
+	}
+
+	/**
+	 * @return Does the search of the AIPlayer rate the position as draw?
+	 */
+	private static boolean isDrawn(Game game) {
+		return game.isRepetition() || game.getMovesWithoutMill() >= game.getDrawRules().getMovesWithoutMill();
+	}
+
+	/**
+	 * @return Is the position proven for the moves without mill it has now?
+	 */
+	private boolean isProven(Game game, Player sideToMove) {
+		int slot = lookup(tableKey(game, sideToMove));
+		return slot >= 0 && proofNumbers[slot] == 0 && game.getMovesWithoutMill() <= movesWithoutMill[slot];
+	}
+
+	private boolean isOnPath(long key, int ply) {
+		//only positions with the same player in turn as the child can be equal to it
+		for(int i = ply - 1; i >= 0; i -= 2) {
+			if(path[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean exceedsBudget() {
+		if(nodes >= maxNodes || ((nodes & 1023) == 0 && System.nanoTime() > deadline)) {
+			aborted = true;
+		}
+		return aborted;
+	}
+
+	private long tableKey(Game game, Player sideToMove) {
+		long key = game.getPositionKey(sideToMove);
+		return sideToMove == attacker ? key | ATTACKER_TO_MOVE : key;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+	/**
+	 * @return The slot of the position or -1 if it isn't stored or only valid in an earlier solve
+	 */
+	private int lookup(long key) {
+		int slot = slot(key);
+		return keys[slot] == key && (solves[slot] == PERMANENT || solves[slot] == solve) ? slot : -1;
+	}
+
+	/**
+	 * @param validIn PERMANENT or the current solve if the numbers depend on the path
+	 * @param game The game in the position, its moves without mill are kept for a proof
+	 */
+	private void store(long key, int pn, int dn, int validIn, Game game) {
+		int slot = slot(key);
+		keys[slot] = key;
+		proofNumbers[slot] = pn;
+		disproofNumbers[slot] = dn;
+		solves[slot] = validIn;
+		movesWithoutMill[slot] = game.getMovesWithoutMill();
+	}
+}
@@ -0,0 +1,40 @@
+package game.players;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of one search of the AIPlayer, from its start to its result.
+ * Costs nothing unless a recording enables it.
+ */
+@Name(SearchEvent.NAME)
+@Label("Search")
+@Category({"Nine Men's Morris", "Search"})
+@Description("A search of the AIPlayer for the best move")
+class SearchEvent extends jdk.jfr.Event {
+	static final String NAME = "game.Search";
+
+	@Label("Game Phase")
+	String phase;
+
+	@Label("Search Mode")
+	String mode;
+
+	@Label("Depth")
+	@Description("Depth of the last completed iteration")
+	int depth;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Score")
+	int score;
+
+	@Label("Move")
+	String move;
+
+	@Label("Aborted")
+	@Description("Was the search stopped by a limit before reaching its depth?")
+	boolean aborted;
+}
@@ -0,0 +1,61 @@
+package game.players;
+
+/**
+ * Limits of a search: the maximum depth as well as optional limits of the nodes and the time.
+ * A search limited by nodes or time deepens iteratively and returns the result of the last completed iteration.
+ */
+public class SearchLimits {
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	
+	private final int depth;
+	private final long maxNodes;
+	private final long maxMillis;
+	
+	/**
+	 * @param depth The maximum depth
+	 * @param maxNodes The maximum number of nodes or UNLIMITED
+	 * @param maxMillis The maximum time in milliseconds or UNLIMITED
+	 */
+	public SearchLimits(int depth, long maxNodes, long maxMillis) {
+		if(depth < 1 || maxNodes < 1 || maxMillis < 0) 
+			throw new IllegalArgumentException();
+		this.depth = depth;
+		this.maxNodes = maxNodes;
+		this.maxMillis = maxMillis;
+	}
+	
+	/**
+	 * @param depth The depth to search
+	 * @return Limits only restricting the depth
+	 */
+	public static SearchLimits ofDepth(int depth) {
+		return new SearchLimits(depth, UNLIMITED, UNLIMITED);
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+	
+	public long getMaxMillis() {
+		return maxMillis;
+	}
+	
+	/**
+	 * @return Can the search be stopped by the nodes or the time before it reaches the depth?
+	 */
+	public boolean isInterruptible() {
+		return maxNodes != UNLIMITED || maxMillis != UNLIMITED;
+	}
+	
+	/**
+	 * @param startNanos The start of the search as given by System.nanoTime()
+	 * @return The time the search has to stop as given by System.nanoTime()
+	 */
+	long getDeadline(long startNanos) {
+		return maxMillis == UNLIMITED ? Long.MAX_VALUE : startNanos + maxMillis * 1_000_000L;
+	}
+}
@@ -0,0 +1,26 @@
+package game.players;
+
+/**
+ * The search algorithms the AIPlayer can use to determine its move
+ */
+public enum SearchMode {
+	/**
+	 * Alpha Beta search with a full window for every move at the root, 
+	 * so all equally rated best moves are known and one of them is chosen randomly
+	 */
+	ALPHA_BETA,
+	/**
+	 * Iterative deepening with MTD(f): a series of zero window Alpha Beta searches converging on the
+	 * minimax value, starting from the value of the previous iteration. Needs the transposition table.
+	 */
+	MTDF;
+	
+	@Override
+	public String toString() {
+		switch(this) {
+			case ALPHA_BETA: return "Alpha Beta";
+			case MTDF: return "MTD(f)";
+			default : throw new IllegalArgumentException();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package game.players;
+import game.board.*;
+import game.record.MoveNotation;
+
+/**
+ * This class holds the outcome of a search: the chosen move,
+ * its score from the point of view of the searching player and
+ * some statistics of the search
+ */
+public class SearchResult {
+	private final Move move;
+	private final int score;
+	private final int depth;
+	private final long nodes;
+	private final int[] principalVariation;
+
+	/**
+	 * @param move The best move found, null if the player has no moves
+	 * @param score The score of the move for the searching player
+	 * @param depth The depth the score was determined with
+	 * @param nodes Number of nodes visited by the search
+	 */
+	public SearchResult(Move move, int score, int depth, long nodes) {
+		this(move, score, depth, nodes, move == null ? new int[0] : new int[] {move.toCode()});
+	}
+
+	/**
+	 * @param move The best move found, null if the player has no moves
+	 * @param score The score of the move for the searching player
+	 * @param depth The depth the score was determined with
+	 * @param nodes Number of nodes visited by the search
+	 * @param principalVariation The codes of the expected moves of both players, starting with move
+	 */
+	public SearchResult(Move move, int score, int depth, long nodes, int[] principalVariation) {
+		this.move = move;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.principalVariation = principalVariation.clone();
+	}
+
+	public Move getMove() {
+		return move;
+	}
+
+	public int getScore() {
+		return score;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return The codes of the moves the search expects to be played, starting with the best move, see Move.toCode()
+	 */
+	public int[] getPrincipalVariation() {
+		return principalVariation.clone();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder pv = new StringBuilder();
+		for(int code : principalVariation) {
+			pv.append(' ').append(MoveNotation.format(code));
+		}
+		return "move " + move + " score " + score + " depth " + depth + " nodes " + nodes + " pv" + pv;
+	}
+}
@@ -0,0 +1,111 @@
+package game.players;
+import java.util.Arrays;
+import game.board.MoveGenerator;
+
+/**
+ * The state of one thread running the Alpha Beta search of an AIPlayer, see AIPlayer.alphaBeta:
+ * for every ply the move picker of the node, its killer moves, its line of the principal variation table
+ * and the move leading on, together with the nodes the thread visited.
+ * The sequential search owns one stack, the parallel search one for every worker, so the node search is the same for both.
+ */
+class SearchStack {
+	/**
+	 * Move pickers of the nodes, one per ply so the nodes along the path keep their state
+	 */
+	final MovePicker[] pickers = new MovePicker[AIPlayer.MAX_PLY + 1];
+	/**
+	 * The two latest quiet moves that caused a cutoff at each ply, tried right after the captures
+	 */
+	final int[][] killers = new int[AIPlayer.MAX_PLY + 1][2];
+	/**
+	 * Triangular principal variation table: row ply holds the best line found from the node at ply
+	 * (pvLength[ply] moves), which is built from the row of the next ply whenever a move raises alpha
+	 */
+	final int[][] pvTable = new int[AIPlayer.MAX_PLY + 1][AIPlayer.MAX_PLY + 1];
+	final int[] pvLength = new int[AIPlayer.MAX_PLY + 1];
+	/**
+	 * The moves from the root to the current node, path[ply] leads from the node at ply to the next one
+	 */
+	final int[] path = new int[AIPlayer.MAX_PLY + 1];
+	/**
+	 * What the tree dump writes about the nodes along the path: their flags, the number of searched moves
+	 * and the indices of the move causing the cutoff and of the best move
+	 */
+	final int[] treeFlags = new int[AIPlayer.MAX_PLY + 1];
+	final int[] treeSearched = new int[AIPlayer.MAX_PLY + 1];
+	final int[] treeCutoffs = new int[AIPlayer.MAX_PLY + 1];
+	final int[] treeBest = new int[AIPlayer.MAX_PLY + 1];
+	/**
+	 * The moves of the node of depth 1 whose leaves are evaluated at once, see pickLeaves
+	 */
+	int[] leaves = new int[64];
+	/**
+	 * The parallel search the stack works for or null for the sequential search
+	 */
+	final ParallelSearch parallel;
+	/**
+	 * The split point whose moves the thread searches or null
+	 */
+	ParallelSearch.SplitPoint split;
+	/**
+	 * Is the node about to be searched on the ordering variation of the player?
+	 */
+	boolean followingVariation;
+	/**
+	 * Nodes visited, the parallel search adds them to its total from time to time
+	 */
+	long nodes;
+	long countedNodes;
+
+	/**
+	 * @param parallel The parallel search the stack works for or null
+	 */
+	SearchStack(ParallelSearch parallel) {
+		this.parallel = parallel;
+		for(int i = 0; i < pickers.length; i++) {
+			pickers[i] = new MovePicker();
+		}
+		clearKillers();
+	}
+
+	/**
+	 * Forgets the killer moves, they belong to the positions of one search
+	 */
+	void clearKillers() {
+		for(int[] killersOfPly : killers) {
+			Arrays.fill(killersOfPly, -1);
+		}
+	}
+
+	/**
+	 * Remembers a quiet move that caused a cutoff
+	 */
+	void storeKiller(int ply, int code) {
+		if(!MoveGenerator.isCapture(code) && killers[ply][0] != code) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = code;
+		}
+	}
+
+	/**
+	 * Takes all moves from a picker into leaves, in the order it hands them out
+	 * @return The number of moves
+	 */
+	int pickLeaves(MovePicker picker) {
+		int n = 0;
+		for(int code = picker.next(); code >= 0; code = picker.next()) {
+			if(n == leaves.length) {
+				leaves = Arrays.copyOf(leaves, n * 2);
+			}
+			leaves[n++] = code;
+		}
+		return n;
+	}
+
+	/**
+	 * @return Was the split point the thread works for or one above it cut off, so the search is useless?
+	 */
+	boolean isCutOff() {
+		return split != null && split.isCutOff();
+	}
+}
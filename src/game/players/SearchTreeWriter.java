@@ -0,0 +1,164 @@
+package game.players;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the trees explored by the Alpha Beta search of an AIPlayer into a compact binary file
+ * for offline inspection, see AIPlayer.enableTreeDump and game.analysis.SearchTreeAnalyzer.
+ *
+ * The file starts with a header of eight bytes: the magic "NMMT", the version and three reserved bytes.
+ * Records of RECORD_SIZE bytes (little-endian) follow:
+ * type (byte), flags (byte), ply (byte), remaining depth (byte), move leading to the node (short, -1 for none),
+ * number of searched moves (short), index of the move causing the cutoff (short, -1 for none),
+ * index of the best move (short, -1 for none), alpha and beta at the entry of the node (int) and the returned value (int).
+ *
+ * Every search starts with a SEARCH record, which holds the position key in the alpha (high half) and beta (low half)
+ * fields and the depth of the search. The nodes are written in post-order, i.e. when they return, so the children of a node
+ * are the records of the next ply written since the previous record of its ply. Each pass over the root moves ends
+ * with a ROOT record of ply 0, an iteration of MTD(f) makes several passes.
+ *
+ * The records are collected in a buffer and written when it is full and at the end of a search. To record live traffic
+ * only every sampleInterval-th search is written and the recording stops before the file exceeds its size limit.
+ * An I/O error stops the recording as well instead of disturbing the search, see getError.
+ */
+public class SearchTreeWriter implements Closeable {
+	public static final byte[] MAGIC = {'N', 'M', 'M', 'T'};
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 8;
+	public static final int RECORD_SIZE = 24;
+
+	//record types
+	public static final int SEARCH = 0;
+	public static final int ROOT = 1;
+	public static final int NODE = 2;
+
+	//flags of a node
+	public static final int LEAF = 1;
+	public static final int DRAW = 1 << 1;
+	public static final int TABLE_HIT = 1 << 2;
+	public static final int TERMINAL = 1 << 3;
+	public static final int CUTOFF = 1 << 4;
+	public static final int ABORTED = 1 << 5;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final int sampleInterval;
+	private final long maxBytes;
+	private long searches;
+	private long written;
+	private boolean recording;
+	private IOException error;
+
+	/**
+	 * Creates the file (an existing one is replaced) and writes the header
+	 * @param file The file of the dump
+	 * @param sampleInterval Every sampleInterval-th search is written, 1 to write all
+	 * @param maxBytes No search is written anymore once the file reached this size
+	 * @throws IOException
+	 */
+	public SearchTreeWriter(Path file, int sampleInterval, long maxBytes) throws IOException {
+		if(sampleInterval < 1) {
+			throw new IllegalArgumentException("sampleInterval must be positive");
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.sampleInterval = sampleInterval;
+		this.maxBytes = maxBytes;
+		buffer.put(MAGIC).put((byte) VERSION).put((byte) 0).put((byte) 0).put((byte) 0);
+		drain();
+	}
+
+	/**
+	 * Decides whether a search is written and starts it
+	 * @param key The position key of the root
+	 * @param depth The depth of the search
+	 * @return Is the search written?
+	 */
+	boolean beginSearch(long key, int depth) {
+		recording = error == null && searches++ % sampleInterval == 0 && written < maxBytes;
+		if(recording) {
+			put(SEARCH, 0, 0, depth, -1, 0, -1, -1, (int) (key >>> 32), (int) key, 0);
+		}
+		return recording;
+	}
+
+	/**
+	 * Writes a node below the root
+	 */
+	void writeNode(int ply, int depth, int move, int alpha, int beta, int value, int flags, int searched, int cutoffIndex, int bestIndex) {
+		put(NODE, flags, ply, depth, move, searched, cutoffIndex, bestIndex, alpha, beta, value);
+	}
+
+	/**
+	 * Writes the end of a pass over the root moves
+	 */
+	void writeRoot(int depth, int alpha, int beta, int value, int flags, int searched, int cutoffIndex, int bestIndex) {
+		put(ROOT, flags, 0, depth, -1, searched, cutoffIndex, bestIndex, alpha, beta, value);
+	}
+
+	/**
+	 * Ends a search, its records are written to the file
+	 */
+	void endSearch() {
+		if(recording) {
+			drain();
+			recording = false;
+		}
+	}
+
+	/**
+	 * @return The error that stopped the recording or null
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * @return The number of bytes written to the file
+	 */
+	public long getBytesWritten() {
+		return written;
+	}
+
+	@Override
+	public void close() throws IOException {
+		drain();
+		channel.close();
+		if(error != null) {
+			throw error;
+		}
+	}
+
+	private void put(int type, int flags, int ply, int depth, int move, int searched, int cutoffIndex, int bestIndex,
+			int alpha, int beta, int value) {
+		if(!recording) {
+			return;
+		}
+		if(buffer.remaining() < RECORD_SIZE) {
+			drain();
+		}
+		buffer.put((byte) type).put((byte) flags).put((byte) ply).put((byte) depth)
+			.putShort((short) move).putShort((short) searched).putShort((short) cutoffIndex).putShort((short) bestIndex)
+			.putInt(alpha).putInt(beta).putInt(value);
+	}
+
+	private void drain() {
+		buffer.flip();
+		try {
+			while(buffer.hasRemaining()) {
+				written += channel.write(buffer);
+			}
+		}
+		catch(IOException x) {
+			error = x;
+			recording = false;
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,196 @@
+package game.players;
+import game.*;
+
+/**
+ * Distributes the thinking time of a whole game among the moves of an AIPlayer, see AIPlayer.setTimeManager.
+ *
+ * Every move gets a share of the remaining time according to the game phase: placing a piece is cheap,
+ * the moves around the transition into the flying pieces phase (a player has three or four pieces left) decide
+ * the game and get the most time. The moves still to come are estimated from the phase and the remaining pieces.
+ *
+ * Within a move the search deepens iteratively and after every iteration the manager decides whether to start another:
+ * the time of the next iteration is predicted by the measured effective branching factor (nodes of the last iteration
+ * divided by the nodes of the one before). Another iteration is started while the share of the move isn't used up
+ * and if it is expected to complete before the hard limit of the move, since an iteration stopped there is wasted.
+ * The time is reduced while the best move stays the same over several iterations and extended when the score drops,
+ * but never beyond the hard limit.
+ */
+public class TimeManager {
+	/**
+	 * Relative weight of a move in each situation
+	 */
+	private static final double PLACING_WEIGHT = 0.4;
+	private static final double MOVING_WEIGHT = 1.0;
+	private static final double FLYING_WEIGHT = 2.0;
+	/**
+	 * Own moves expected in the moving pieces phase when all pieces are on the board,
+	 * and the fewest own moves expected for the rest of a game
+	 */
+	private static final int MOVING_MOVES = 16;
+	private static final int MIN_MOVES_LEFT = 8;
+	/**
+	 * The hard limit of a move is this multiple of its share, but at most MAX_SHARE of the remaining time
+	 */
+	private static final double MAX_FACTOR = 4.0;
+	private static final double MAX_SHARE = 0.25;
+	/**
+	 * The share is multiplied by STABLE_FACTOR when the best move didn't change for STABLE_ITERATIONS iterations,
+	 * and by DROP_FACTOR when the score dropped by DROP_SCORE (half a piece) or more
+	 */
+	private static final int STABLE_ITERATIONS = 2;
+	private static final double STABLE_FACTOR = 0.5;
+	private static final int DROP_SCORE = 15;
+	private static final double DROP_FACTOR = 2.0;
+
+	private final long gameMillis;
+	private long remainingNanos;
+
+	//state of the running move
+	private long startNanos;
+	private long optimumNanos;
+	private long maximumNanos;
+	private int numOfMoves;
+	private long lastIterationStart;
+	private long lastIterationNanos;
+	private long lastIterationNodes;
+	private long previousNodes;
+	private int bestMove;
+	private int stableIterations;
+	private int firstScore;
+
+	/**
+	 * @param gameMillis The thinking time of the player for a whole game
+	 */
+	public TimeManager(long gameMillis) {
+		if(gameMillis < 1)
+			throw new IllegalArgumentException("gameMillis must be positive");
+		this.gameMillis = gameMillis;
+		newGame();
+	}
+
+	/**
+	 * Restores the time of a whole game
+	 */
+	public void newGame() {
+		remainingNanos = gameMillis * 1_000_000L;
+	}
+
+	/**
+	 * @return The thinking time left for the rest of the game
+	 */
+	public long getRemainingMillis() {
+		return remainingNanos / 1_000_000L;
+	}
+
+	/**
+	 * @return The share of the running move in milliseconds
+	 */
+	public long getOptimumMillis() {
+		return optimumNanos / 1_000_000L;
+	}
+
+	/**
+	 * @return The hard limit of the running move in milliseconds
+	 */
+	public long getMaximumMillis() {
+		return maximumNanos / 1_000_000L;
+	}
+
+	/**
+	 * Starts the clock of a move and computes its share of the remaining time
+	 * @param game The game where everything takes place
+	 * @param player The player in turn
+	 * @param numOfMoves The number of legal moves
+	 */
+	void startMove(Game game, Player player, int numOfMoves) {
+		startNanos = System.nanoTime();
+		lastIterationStart = startNanos;
+		this.numOfMoves = numOfMoves;
+		lastIterationNanos = 0;
+		lastIterationNodes = 0;
+		previousNodes = 0;
+		bestMove = -1;
+		stableIterations = 0;
+
+		Player opponent = game.getOtherPlayer(player);
+		double weight = weightOf(player, opponent);
+		double share = remainingNanos * weight / (weight + weightOfMovesLeft(player, opponent));
+		optimumNanos = (long) share;
+		maximumNanos = Math.min((long) (share * MAX_FACTOR), (long) (remainingNanos * MAX_SHARE));
+	}
+
+	/**
+	 * Records a completed iteration and decides whether the next one is started
+	 * @param result The result of the iteration
+	 * @param nodes The number of nodes of the move so far
+	 * @return Should the search deepen?
+	 */
+	boolean continueIteration(SearchResult result, long nodes) {
+		long now = System.nanoTime();
+		long elapsed = now - startNanos;
+		long iterationNodes = nodes - previousNodes;
+		//the effective branching factor, the first iteration is too small to tell anything
+		double branching = lastIterationNodes == 0 ? 0 : Math.max(1.0, (double) iterationNodes / lastIterationNodes);
+		lastIterationNanos = now - lastIterationStart;
+		lastIterationStart = now;
+		lastIterationNodes = iterationNodes;
+		previousNodes = nodes;
+
+		int move = result.getMove().toCode();
+		if(bestMove == -1) {
+			//a drop is measured against the score of the first iteration
+			firstScore = result.getScore();
+		}
+		stableIterations = move == bestMove ? stableIterations + 1 : 0;
+		bestMove = move;
+		if(numOfMoves <= 1) {
+			//there is nothing to choose
+			return false;
+		}
+
+		double target = optimumNanos;
+		if(stableIterations >= STABLE_ITERATIONS) {
+			target *= STABLE_FACTOR;
+		}
+		if(result.getScore() <= firstScore - DROP_SCORE) {
+			target *= DROP_FACTOR;
+		}
+		//an iteration stopped by the hard limit is wasted
+		return elapsed < Math.min(target, maximumNanos) && elapsed + lastIterationNanos * branching < maximumNanos;
+	}
+
+	/**
+	 * Stops the clock of the move, its time is taken from the remaining time
+	 */
+	void endMove() {
+		remainingNanos = Math.max(0, remainingNanos - (System.nanoTime() - startNanos));
+	}
+
+	/**
+	 * @return The weight of the move of player
+	 */
+	private static double weightOf(Player player, Player opponent) {
+		if(player.getGamePhase() == GamePhase.PLACING_PIECES) {
+			return PLACING_WEIGHT;
+		}
+		//the transition into the flying pieces phase and the flying itself
+		if(Math.min(player.getNumOfRemainingPieces(), opponent.getNumOfRemainingPieces()) <= 4) {
+			return FLYING_WEIGHT;
+		}
+		return MOVING_WEIGHT;
+	}
+
+	/**
+	 * Estimates the weighted own moves after the current one
+	 */
+	private static double weightOfMovesLeft(Player player, Player opponent) {
+		if(player.getGamePhase() == GamePhase.PLACING_PIECES) {
+			int placements = Math.max(0, PositionCodec.PIECES - player.getNumOfPlacedPieces() - 1);
+			return placements * PLACING_WEIGHT + MOVING_MOVES * MOVING_WEIGHT;
+		}
+		//the fewer pieces are left, the closer the end of the game
+		int pieces = Math.min(player.getNumOfRemainingPieces(), opponent.getNumOfRemainingPieces());
+		int movesLeft = Math.max(MIN_MOVES_LEFT, MOVING_MOVES * (pieces - 2) / (PositionCodec.PIECES - 2));
+		return movesLeft * weightOf(player, opponent);
+	}
+}
@@ -0,0 +1,118 @@
+package game.players;
+import java.util.Arrays;
+
+/**
+ * Memory of the Alpha Beta search: stores the value, its bound type, the remaining depth and the best move
+ * of searched positions, so transpositions don't have to be searched again and the best move is tried first.
+ *
+ * The table is direct-mapped and works without locks. Every slot stores the key xor'ed with the packed entry,
+ * an entry torn by concurrent writes fails the verification on probe and is treated as a miss.
+ */
+public class TranspositionTable {
+	/**
+	 * The value is exact
+	 */
+	public static final int EXACT = 0;
+	/**
+	 * The value is a lower bound, the search failed high
+	 */
+	public static final int LOWER_BOUND = 1;
+	/**
+	 * The value is an upper bound, the search failed low
+	 */
+	public static final int UPPER_BOUND = 2;
+	/**
+	 * Marks stored entries, so that the zeroed slots of a new table never verify
+	 */
+	private static final long VALID = 1L << 63;
+
+	private final long[] checks;
+	private final long[] entries;
+	private final int mask;
+	private long probes;
+	private long hits;
+
+	/**
+	 * @param bits The table holds 2^bits entries, each taking 16 bytes
+	 */
+	public TranspositionTable(int bits) {
+		checks = new long[1 << bits];
+		entries = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Looks up a position
+	 * @param key The position key, see Game.getPositionKey
+	 * @return The packed entry (never negative), to be decoded by value, depth, bound and move, or -1 if the position isn't stored
+	 */
+	public long probe(long key) {
+		probes++;
+		int slot = slot(key);
+		long entry = entries[slot];
+		if((entry & VALID) != 0 && (checks[slot] ^ entry) == key) {
+			hits++;
+			return entry & ~VALID;
+		}
+		return -1;
+	}
+
+	/**
+	 * Stores a position. An entry of another position is always replaced,
+	 * an entry of the same position only if it was searched less deep
+	 * @param key The position key
+	 * @param value The value of the position
+	 * @param depth The remaining depth the value was determined with
+	 * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+	 * @param moveCode The code of the best move or -1 if there is none
+	 */
+	public void store(long key, int value, int depth, int bound, int moveCode) {
+		int slot = slot(key);
+		long old = entries[slot];
+		if((old & VALID) != 0 && (checks[slot] ^ old) == key && depth(old) > depth) {
+			return;
+		}
+		long entry = VALID | (value & 0xFFFFFFFFL) | (long) (depth & 0xFF) << 32 | (long) bound << 40
+				| (long) (moveCode & 0x7FFF) << 42 | (moveCode < 0 ? 1L << 57 : 0);
+		entries[slot] = entry;
+		checks[slot] = key ^ entry;
+	}
+
+	public static int value(long entry) {
+		return (int) entry;
+	}
+
+	public static int depth(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	public static int bound(long entry) {
+		return (int) (entry >>> 40) & 3;
+	}
+
+	/**
+	 * @return The code of the best move or -1 if none was stored
+	 */
+	public static int move(long entry) {
+		return (entry & 1L << 57) != 0 ? -1 : (int) (entry >>> 42) & 0x7FFF;
+	}
+
+	public void clear() {
+		Arrays.fill(entries, 0);
+		Arrays.fill(checks, 0);
+		probes = 0;
+		hits = 0;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+}
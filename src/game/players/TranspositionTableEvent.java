@@ -0,0 +1,22 @@
+package game.players;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event with the use of the transposition table during one search
+ */
+@Name(TranspositionTableEvent.NAME)
+@Label("Transposition Table")
+@Category({"Nine Men's Morris", "Search"})
+@Description("Probes and hits of the transposition table during a search")
+class TranspositionTableEvent extends jdk.jfr.Event {
+	static final String NAME = "game.TranspositionTable";
+
+	@Label("Probes")
+	long probes;
+
+	@Label("Hits")
+	long hits;
+}
@@ -0,0 +1,70 @@
+package game.record;
+import game.board.*;
+
+/**
+ * Constants and the move encoding of the binary game record format.
+ * 
+ * A record starts with a header of six bytes: the magic "NMMR", the format version and a flags byte
+ * (reserved, currently 0). The games follow one after the other, each one terminated by END_OF_GAME.
+ * 
+ * Every move starts with a byte holding the destination in bits 0-4. Bit 5 announces a following
+ * byte with the source, bit 6 a following byte with the piece to remove. So a placement takes one byte,
+ * a movement two and a move making a mill one more. Bit 7 is never set in the first byte of a move,
+ * which keeps END_OF_GAME distinguishable from moves.
+ */
+public final class BinaryRecordFormat {
+	public static final byte[] MAGIC = {'N', 'M', 'M', 'R'};
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = MAGIC.length + 2;
+	public static final int END_OF_GAME = 0xFF;
+	
+	static final int HAS_SOURCE = 1 << 5;
+	static final int HAS_REMOVAL = 1 << 6;
+	static final int INDEX_MASK = 31;
+	/**
+	 * Maximum number of bytes of a single move
+	 */
+	static final int MAX_MOVE_SIZE = 3;
+	
+	private BinaryRecordFormat() {
+	}
+	
+	/**
+	 * Encodes a move into the buffer
+	 * @param moveCode The code of the move, see Move.toCode()
+	 * @param buffer The buffer, at least MAX_MOVE_SIZE bytes have to be available after offset
+	 * @param offset The offset the move is written at
+	 * @return The number of bytes written
+	 */
+	static int encode(int moveCode, byte[] buffer, int offset) {
+		int source = Move.sourceOf(moveCode), toRemove = Move.pieceToRemoveOf(moveCode);
+		int first = Move.destinationOf(moveCode);
+		int size = 1;
+		if(source != Move.NO_POSITION) {
+			first |= HAS_SOURCE;
+			buffer[offset + size++] = (byte) source;
+		}
+		if(toRemove != Move.NO_POSITION) {
+			first |= HAS_REMOVAL;
+			buffer[offset + size++] = (byte) toRemove;
+		}
+		buffer[offset] = (byte) first;
+		return size;
+	}
+	
+	/**
+	 * @param header The first HEADER_SIZE bytes of a file
+	 * @return Is it a binary game record of a supported version?
+	 */
+	public static boolean isBinaryRecord(byte[] header) {
+		if(header.length < HEADER_SIZE) {
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++) {
+			if(header[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return header[MAGIC.length] == VERSION;
+	}
+}
@@ -0,0 +1,172 @@
+package game.record;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import game.board.*;
+
+/**
+ * Reads the binary record format (see BinaryRecordFormat) directly from a ByteBuffer,
+ * without copying the record or creating objects per move.
+ * 
+ * Records opened from a file are memory mapped. Files larger than a single mapping are mapped
+ * window by window, a window always starts at a game, so every game is completely mapped when it is read.
+ */
+public class BinaryRecordReader implements GameRecordSource {
+	private static final long WINDOW_SIZE = 1L << 30;
+	
+	private final FileChannel channel;
+	private final long fileSize;
+	private long windowStart;
+	private ByteBuffer buffer;
+	/**
+	 * position of the END_OF_GAME of the current game in the buffer, -1 before the first game
+	 */
+	private int gameEnd = -1;
+	private long gameIndex = -1;
+	private int[] moves = new int[128];
+	
+	/**
+	 * Reads a record from a buffer, starting at its current position with the header
+	 * @param buffer The record
+	 * @throws IOException if the buffer doesn't start with the header of a supported version
+	 */
+	public BinaryRecordReader(ByteBuffer buffer) throws IOException {
+		this(null, buffer.remaining(), buffer.slice());
+	}
+	
+	private BinaryRecordReader(FileChannel channel, long fileSize, ByteBuffer buffer) throws IOException {
+		this.channel = channel;
+		this.fileSize = fileSize;
+		this.buffer = buffer;
+		byte[] header = new byte[BinaryRecordFormat.HEADER_SIZE];
+		if(buffer.remaining() < header.length) {
+			throw new IOException("Not a binary game record");
+		}
+		buffer.get(header);
+		if(!BinaryRecordFormat.isBinaryRecord(header)) {
+			throw new IOException("Not a binary game record or unsupported version");
+		}
+	}
+	
+	/**
+	 * Opens a record file by mapping it into memory
+	 * @param path The record file
+	 * @return The reader, which has to be closed
+	 * @throws IOException
+	 */
+	public static BinaryRecordReader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_SIZE));
+			return new BinaryRecordReader(channel, size, buffer);
+		}
+		catch(IOException | RuntimeException x) {
+			channel.close();
+			throw x;
+		}
+	}
+	
+	/**
+	 * Advances to the next game, skipping the rest of the current game
+	 * @return false if the end of the record is reached
+	 * @throws IOException
+	 */
+	public boolean startGame() throws IOException {
+		if(gameEnd >= 0) {
+			buffer.position(gameEnd + 1);
+		}
+		int start = buffer.position();
+		int end = findEndOfGame(start);
+		if(end < 0 && channel != null && windowStart + buffer.limit() < fileSize) {
+			//the game crosses the end of the window, so map the next window starting at the game
+			end = remap(windowStart + start);
+		}
+		if(end < 0) {
+			//a truncated game at the end of the record is ignored
+			gameEnd = buffer.limit() - 1;
+			buffer.position(buffer.limit());
+			return false;
+		}
+		gameEnd = end;
+		gameIndex++;
+		return true;
+	}
+	
+	/**
+	 * Reads the next move of the current game
+	 * @return The code of the move (see Move.toCode()) or -1 if the game has no more moves
+	 */
+	public int nextMove() {
+		if(buffer.position() >= gameEnd) {
+			return -1;
+		}
+		int first = buffer.get();
+		int source = Move.NO_POSITION, toRemove = Move.NO_POSITION;
+		if((first & BinaryRecordFormat.HAS_SOURCE) != 0) {
+			source = buffer.get() & BinaryRecordFormat.INDEX_MASK;
+		}
+		if((first & BinaryRecordFormat.HAS_REMOVAL) != 0) {
+			toRemove = buffer.get() & BinaryRecordFormat.INDEX_MASK;
+		}
+		return Move.toCode(source, first & BinaryRecordFormat.INDEX_MASK, toRemove);
+	}
+	
+	@Override
+	public int[] nextGame() throws IOException {
+		if(!startGame()) {
+			return null;
+		}
+		int n = 0, code;
+		while((code = nextMove()) >= 0) {
+			if(n == moves.length) {
+				moves = Arrays.copyOf(moves, n * 2);
+			}
+			moves[n++] = code;
+		}
+		return Arrays.copyOf(moves, n);
+	}
+	
+	@Override
+	public long getGameIndex() {
+		return gameIndex;
+	}
+	
+	private int findEndOfGame(int from) {
+		for(int i = from; i < buffer.limit(); i++) {
+			if((buffer.get(i) & 0xFF) == BinaryRecordFormat.END_OF_GAME) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Maps a new window starting at the given file position, growing the window
+	 * until the game at the start fits in or the end of the file is reached
+	 * @return The position of the END_OF_GAME of the first game in the new buffer or -1
+	 */
+	private int remap(long start) throws IOException {
+		long size = WINDOW_SIZE;
+		while(true) {
+			long mapped = Math.min(size, fileSize - start);
+			windowStart = start;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, mapped);
+			int end = findEndOfGame(0);
+			if(end >= 0 || start + mapped == fileSize || size >= Integer.MAX_VALUE) {
+				return end;
+			}
+			size = Math.min(size * 2, Integer.MAX_VALUE);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(channel != null) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package game.record;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import game.*;
+import game.players.*;
+
+/**
+ * Writes games in the binary record format (see BinaryRecordFormat).
+ * 
+ * The writer is registered as MoveListener of a game, so every move applied to the game is recorded.
+ * Moves applied and undone again by the search are dropped, therefore the moves of the running game 
+ * are kept in a buffer until endGame() appends the game to the record.
+ */
+public class BinaryRecordWriter implements MoveListener, Closeable {
+	private final OutputStream out;
+	private byte[] game = new byte[256];
+	private int size;
+	/**
+	 * offsets of the moves in the buffer to drop undone moves and to add separately removed pieces
+	 */
+	private int[] moveOffsets = new int[128];
+	private int moves;
+	
+	/**
+	 * Creates the writer and writes the header of the record
+	 * @param out The stream of the record, it is closed by close()
+	 * @throws IOException
+	 */
+	public BinaryRecordWriter(OutputStream out) throws IOException {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.out.write(BinaryRecordFormat.MAGIC);
+		this.out.write(BinaryRecordFormat.VERSION);
+		this.out.write(0);
+	}
+	
+	@Override
+	public void moveApplied(int moveCode, Player player) {
+		if(size + BinaryRecordFormat.MAX_MOVE_SIZE > game.length) {
+			game = Arrays.copyOf(game, game.length * 2);
+		}
+		if(moves == moveOffsets.length) {
+			moveOffsets = Arrays.copyOf(moveOffsets, moves * 2);
+		}
+		moveOffsets[moves++] = size;
+		size += BinaryRecordFormat.encode(moveCode, game, size);
+	}
+
+	@Override
+	public void moveUndone(int moveCode, Player player) {
+		size = moveOffsets[--moves];
+	}
+
+	/**
+	 * A piece removed after the move (as done for human players) belongs to the last move
+	 */
+	@Override
+	public void pieceRemoved(int index, Player removingPlayer) {
+		if(moves == 0) {
+			throw new IllegalStateException("Removal without a move");
+		}
+		if(size + 1 > game.length) {
+			game = Arrays.copyOf(game, game.length * 2);
+		}
+		game[moveOffsets[moves - 1]] |= BinaryRecordFormat.HAS_REMOVAL;
+		game[size++] = (byte) index;
+	}
+	
+	/**
+	 * Appends the moves recorded since the last call to the record
+	 * @throws IOException
+	 */
+	public void endGame() throws IOException {
+		out.write(game, 0, size);
+		out.write(BinaryRecordFormat.END_OF_GAME);
+		size = 0;
+		moves = 0;
+	}
+	
+	/**
+	 * Appends a game given as move codes, e.g. when converting records
+	 * @param moveCodes The moves of the game
+	 * @throws IOException
+	 */
+	public void writeGame(int[] moveCodes) throws IOException {
+		for(int code : moveCodes) {
+			moveApplied(code, null);
+		}
+		endGame();
+	}
+	
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,53 @@
+package game.record;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams games from a text game record. Every line holds one game as a sequence of 
+ * whitespace separated moves in record notation (see MoveNotation), starting with the move 
+ * of the player moving first. Empty lines and lines starting with '#' are skipped.
+ * Only one game is held in memory at a time, so the record can be arbitrarily large.
+ */
+public class GameRecordReader implements GameRecordSource {
+	private final BufferedReader reader;
+	private long gameIndex = -1;
+	
+	public GameRecordReader(Reader reader) {
+		this.reader = new BufferedReader(reader, 1 << 16);
+	}
+	
+	@Override
+	public int[] nextGame() throws IOException {
+		String line;
+		while((line = reader.readLine()) != null) {
+			line = line.trim();
+			if(line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			gameIndex++;
+			String[] moves = line.split("\\s+");
+			int[] codes = new int[moves.length];
+			for(int i = 0; i < moves.length; i++) {
+				try {
+					codes[i] = MoveNotation.parseCode(moves[i]);
+				}
+				catch(IllegalArgumentException x) {
+					codes[i] = -1;
+				}
+			}
+			return codes;
+		}
+		return null;
+	}
+	
+	@Override
+	public long getGameIndex() {
+		return gameIndex;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,49 @@
+package game.record;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A game record read game by game, independent of its file format
+ */
+public interface GameRecordSource extends Closeable {
+	
+	/**
+	 * Reads the next game of the record
+	 * @return The codes of the moves of the game (see Move.toCode()), starting with the move of the
+	 * player moving first, or null if the end of the record is reached. 
+	 * A malformed move is returned as -1.
+	 * @throws IOException
+	 */
+	int[] nextGame() throws IOException;
+	
+	/**
+	 * @return The zero based index of the game returned by the last call of nextGame
+	 */
+	long getGameIndex();
+	
+	/**
+	 * Opens a record file, binary records are recognized by their header, 
+	 * every other file is read as text record
+	 * @param path The record file
+	 * @return The record, which has to be closed
+	 * @throws IOException
+	 */
+	static GameRecordSource open(Path path) throws IOException {
+		byte[] header = new byte[BinaryRecordFormat.HEADER_SIZE];
+		int read = 0;
+		try(InputStream in = Files.newInputStream(path)) {
+			int n;
+			while(read < header.length && (n = in.read(header, read, header.length - read)) > 0) {
+				read += n;
+			}
+		}
+		if(read == header.length && BinaryRecordFormat.isBinaryRecord(header)) {
+			return BinaryRecordReader.open(path);
+		}
+		return new GameRecordReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+	}
+}
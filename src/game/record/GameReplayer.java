@@ -0,0 +1,56 @@
+package game.record;
+import java.io.IOException;
+import java.util.function.Supplier;
+import game.*;
+import game.players.*;
+
+/**
+ * Replays binary game records position by position. The moves are applied as move codes
+ * without validation and without creating move objects, so replaying is limited by
+ * reading the record rather than by the game logic.
+ * As in the text records, the human player of the game moves first.
+ */
+public final class GameReplayer {
+	
+	/**
+	 * Callback for every position reached in a replayed game
+	 */
+	public interface PositionVisitor {
+		/**
+		 * @param gameIndex The index of the game in the record
+		 * @param ply Number of moves applied so far
+		 * @param game The game in the position, must not be modified by the visitor
+		 * @param sideToMove The player in turn
+		 */
+		void visit(long gameIndex, int ply, Game game, Player sideToMove);
+	}
+	
+	private GameReplayer() {
+	}
+	
+	/**
+	 * Replays every game of a record
+	 * @param reader The record
+	 * @param newGame Creates the game every recorded game is replayed in
+	 * @param visitor Called for every position including the initial and the final one
+	 * @return The number of positions visited
+	 * @throws IOException
+	 */
+	public static long replay(BinaryRecordReader reader, Supplier<Game> newGame, PositionVisitor visitor) throws IOException {
+		long positions = 0;
+		while(reader.startGame()) {
+			Game game = newGame.get();
+			Player player = game.getHumanPlayer();
+			int ply = 0, code;
+			visitor.visit(reader.getGameIndex(), ply, game, player);
+			positions++;
+			while((code = reader.nextMove()) >= 0) {
+				game.applyMoveCode(code, player);
+				player = game.getOtherPlayer(player);
+				visitor.visit(reader.getGameIndex(), ++ply, game, player);
+				positions++;
+			}
+		}
+		return positions;
+	}
+}
@@ -0,0 +1,78 @@
+package game.record;
+import game.board.*;
+
+/**
+ * This class parses moves given in the record notation, see Move.toString().
+ * "12" places a piece, "3-4" moves a piece and a suffix like "x7" removes a piece of the opponent
+ */
+public final class MoveNotation {
+
+	private MoveNotation() {
+	}
+
+	/**
+	 * Parses a move in record notation
+	 * @param notation The move, e.g. "3-4x7"
+	 * @param board The board the positions of the move are taken from
+	 * @return The parsed move
+	 * @throws IllegalArgumentException if the notation is malformed or an index is out of range
+	 */
+	public static Move parse(String notation, Board board) throws IllegalArgumentException {
+		//the piece to remove isn't set by setPieceToRemove, because the move is parsed before the board reached the position
+		return Move.fromCode(parseCode(notation), board);
+	}
+	
+	/**
+	 * Parses a move in record notation into a move code
+	 * @param notation The move, e.g. "3-4x7"
+	 * @return The code of the move, see Move.toCode()
+	 * @throws IllegalArgumentException if the notation is malformed or an index is out of range
+	 */
+	public static int parseCode(String notation) throws IllegalArgumentException {
+		int removeIndex = Move.NO_POSITION;
+		int sourceIndex = Move.NO_POSITION;
+		String rest = notation;
+		int x = rest.indexOf('x');
+		if(x >= 0) {
+			removeIndex = parseIndex(rest.substring(x + 1), notation);
+			rest = rest.substring(0, x);
+		}
+		int dash = rest.indexOf('-');
+		if(dash >= 0) {
+			sourceIndex = parseIndex(rest.substring(0, dash), notation);
+			rest = rest.substring(dash + 1);
+		}
+		return Move.toCode(sourceIndex, parseIndex(rest, notation), removeIndex);
+	}
+	
+	/**
+	 * Formats a move code in record notation, see Move.toString()
+	 * @param code The code of the move
+	 * @return The move in record notation
+	 */
+	public static String format(int code) {
+		StringBuilder sb = new StringBuilder();
+		if(Move.sourceOf(code) != Move.NO_POSITION) {
+			sb.append(Move.sourceOf(code)).append('-');
+		}
+		sb.append(Move.destinationOf(code));
+		if(Move.pieceToRemoveOf(code) != Move.NO_POSITION) {
+			sb.append('x').append(Move.pieceToRemoveOf(code));
+		}
+		return sb.toString();
+	}
+	
+	private static int parseIndex(String index, String notation) throws IllegalArgumentException {
+		int value;
+		try {
+			value = Integer.parseInt(index);
+		}
+		catch(NumberFormatException x) {
+			throw new IllegalArgumentException("Malformed move " + notation);
+		}
+		if(value < 0 || value >= Board.BOARD_SIZE) {
+			throw new IllegalArgumentException("Index out of range in move " + notation);
+		}
+		return value;
+	}
+}